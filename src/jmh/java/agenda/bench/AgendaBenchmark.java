@@ -0,0 +1,136 @@
+package agenda.bench;
+
+import agenda.Agenda;
+import agenda.Event;
+import agenda.Occurrence;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Description : queries of an {@link Agenda}, compared with a linear scan of the
+ * same events (the original implementation)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms8g", "-Xmx8g" })
+@State(Scope.Benchmark)
+public class AgendaBenchmark {
+
+    @Param({ "1000", "100000", "1000000", "10000000" })
+    int size;
+
+    @Param({ "0.0", "0.2" })
+    double repeatingRatio;
+
+    @Param({ "0", "50" })
+    int exceptionsPerSeries;
+
+    @Param({ "0.05" })
+    double multiDayRatio;
+
+    List<Event> events;
+
+    Agenda agenda;
+
+    LocalDate[] days;
+
+    int nextDay;
+
+    int nextTitle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        events = Fixtures.events(size, repeatingRatio, exceptionsPerSeries, multiDayRatio, size / 10 + 1);
+        agenda = new Agenda();
+        events.forEach(agenda::addEvent);
+        days = Fixtures.days(1024);
+    }
+
+    private LocalDate nextDay() {
+        nextDay = (nextDay + 1) & (days.length - 1);
+        return days[nextDay];
+    }
+
+    private String nextTitle() {
+        nextTitle = (nextTitle + 1) % (size / 10 + 1);
+        return Fixtures.title(nextTitle);
+    }
+
+    @Benchmark
+    public List<Event> eventsInDay() {
+        return agenda.eventsInDay(nextDay());
+    }
+
+    @Benchmark
+    public List<Event> eventsInDayLinearScan() {
+        LocalDate day = nextDay();
+        List<Event> l = new ArrayList<>();
+        for (Event e : events) {
+            if (e.isInDay(day)) {
+                l.add(e);
+            }
+        }
+        return l;
+    }
+
+    @Benchmark
+    public List<Occurrence> upcoming() {
+        return agenda.upcoming(nextDay().atTime(8, 0)).limit(100).toList();
+    }
+
+    @Benchmark
+    public boolean isFreeFor() {
+        return agenda.isFreeFor(nextDay().atTime(10, 0), Duration.ofMinutes(30));
+    }
+
+    @Benchmark
+    public boolean isFreeForLinearScan() {
+        LocalDateTime start1 = nextDay().atTime(10, 0);
+        LocalDateTime end1 = start1.plusMinutes(30);
+        // Every occurrence of the repeating events too, like Agenda.isFreeFor
+        for (Event e : events) {
+            if (e.occurrencesBetween(start1.toLocalDate(), end1.toLocalDate())
+                    .anyMatch(start2 -> start1.isBefore(start2.plus(e.getDuration())) && start2.isBefore(end1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Benchmark
+    public List<Event> findByTitle() {
+        return agenda.findByTitle(nextTitle());
+    }
+
+    @Benchmark
+    public List<Event> findByTitleLinearScan() {
+        String title = nextTitle();
+        List<Event> l = new ArrayList<>();
+        for (Event e : events) {
+            if (e.getTitle().equals(title)) {
+                l.add(e);
+            }
+        }
+        return l;
+    }
+}
@@ -0,0 +1,24 @@
+package agenda.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Description : runs the JMH benchmarks of the agenda with the gc profiler, so
+ * that each benchmark reports its allocation rate along with its throughput.
+ * <p>
+ * Accepts the usual JMH command line, ex : {@code java -jar target/benchmarks.jar
+ * AgendaBenchmark -p size=1000,100000}
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
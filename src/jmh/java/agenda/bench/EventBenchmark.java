@@ -0,0 +1,71 @@
+package agenda.bench;
+
+import agenda.Event;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Description : {@link Event#isInDay(LocalDate)} for each kind of event
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventBenchmark {
+
+    /**
+     * "NONE" for a simple event, otherwise the frequency of the repetition
+     */
+    @Param({ "NONE", "DAYS", "WEEKS", "MONTHS" })
+    String frequency;
+
+    @Param({ "0", "500" })
+    int exceptions;
+
+    @Param({ "60", "2000" })
+    int durationInMinutes;
+
+    Event event;
+
+    LocalDate[] days;
+
+    int next;
+
+    @Setup
+    public void setUp() {
+        LocalDateTime start = LocalDateTime.of(2020, 11, 1, 22, 30);
+        event = new Event("Event", start, Duration.ofMinutes(durationInMinutes));
+        if (!frequency.equals("NONE")) {
+            ChronoUnit unit = ChronoUnit.valueOf(frequency);
+            event.setRepetition(unit);
+            for (int i = 0; i < exceptions; i++) {
+                event.addException(start.toLocalDate().plus(2L * i, unit));
+            }
+        }
+        days = Fixtures.days(1024);
+    }
+
+    @Benchmark
+    public boolean isInDay() {
+        next = (next + 1) & (days.length - 1);
+        return event.isInDay(days[next]);
+    }
+}
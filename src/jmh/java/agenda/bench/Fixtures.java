@@ -0,0 +1,80 @@
+package agenda.bench;
+
+import agenda.Event;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Description : generates reproducible sets of events for the benchmarks
+ */
+final class Fixtures {
+
+    /**
+     * The events start during the 10 years after this day
+     */
+    static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+
+    static final int DAYS = 3652;
+
+    private static final ChronoUnit[] FREQUENCIES = { ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS };
+
+    private Fixtures() {
+    }
+
+    /**
+     * Generates events
+     *
+     * @param count the number of events
+     * @param repeatingRatio the share of repeating events (daily, weekly and monthly in equal parts)
+     * @param exceptionsPerSeries the number of exceptions of each repeating event
+     * @param multiDayRatio the share of events lasting more than a day
+     * @param titles the number of distinct titles
+     * @return the events
+     */
+    static List<Event> events(int count, double repeatingRatio, int exceptionsPerSeries,
+                              double multiDayRatio, int titles) {
+        SplittableRandom random = new SplittableRandom(42);
+        List<Event> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDateTime start = FIRST_DAY.plusDays(random.nextInt(DAYS)).atTime(random.nextInt(24), 15 * random.nextInt(4));
+            Duration duration = random.nextDouble() < multiDayRatio
+                    ? Duration.ofHours(24 + random.nextInt(72))
+                    : Duration.ofMinutes(15 + 15 * random.nextInt(8));
+            Event e = new Event(title(random.nextInt(titles)), start, duration);
+            if (random.nextDouble() < repeatingRatio) {
+                ChronoUnit frequency = FREQUENCIES[random.nextInt(FREQUENCIES.length)];
+                e.setRepetition(frequency);
+                for (int x = 0; x < exceptionsPerSeries; x++) {
+                    e.addException(start.toLocalDate().plus(random.nextInt(500), frequency));
+                }
+                if (random.nextBoolean()) {
+                    e.setTermination(1 + random.nextInt(200));
+                }
+            }
+            events.add(e);
+        }
+        return events;
+    }
+
+    static String title(int i) {
+        return "Event " + i;
+    }
+
+    /**
+     * @return days spread over the range of the generated events
+     */
+    static LocalDate[] days(int count) {
+        SplittableRandom random = new SplittableRandom(7);
+        LocalDate[] days = new LocalDate[count];
+        for (int i = 0; i < count; i++) {
+            days[i] = FIRST_DAY.plusDays(random.nextInt(DAYS));
+        }
+        return days;
+    }
+}
@@ -0,0 +1,71 @@
+package agenda.bench;
+
+import agenda.Agenda;
+import agenda.Event;
+import agenda.ICalendar;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Description : import and export of iCalendar streams, in events per second
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class ICalendarBenchmark {
+
+    static final int EVENTS = 100_000;
+
+    List<Event> events;
+
+    String ics;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        events = Fixtures.events(EVENTS, 0.2, 5, 0.05, EVENTS / 10);
+        StringWriter out = new StringWriter();
+        ICalendar.write(events, out);
+        ics = out.toString();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public Agenda importInto() throws IOException {
+        Agenda agenda = new Agenda();
+        ICalendar.importInto(new StringReader(ics), agenda);
+        return agenda;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public int read() throws IOException {
+        return ICalendar.read(new StringReader(ics), e -> { });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void write() throws IOException {
+        ICalendar.write(events, Writer.nullWriter());
+    }
+}
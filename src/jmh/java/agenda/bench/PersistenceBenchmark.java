@@ -0,0 +1,92 @@
+package agenda.bench;
+
+import agenda.Agenda;
+import agenda.Event;
+import agenda.MappedAgenda;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Description : cold start of an agenda, up to its first query : opening a
+ * {@link MappedAgenda} file compared with rebuilding an {@link Agenda} through
+ * {@link Agenda#addEvent(Event)} or {@link Agenda#addAll(java.util.Collection)}
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Xms8g", "-Xmx8g" })
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+
+    @Param({ "100000", "1000000", "10000000" })
+    int size;
+
+    @Param({ "0.2" })
+    double repeatingRatio;
+
+    List<Event> events;
+
+    Path file;
+
+    LocalDate day;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        events = Fixtures.events(size, repeatingRatio, 5, 0.05, size / 10 + 1);
+        file = Files.createTempFile("agenda", ".bin");
+        MappedAgenda.write(events, file);
+        day = Fixtures.days(1)[0];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public List<Event> openMapped() throws IOException {
+        return MappedAgenda.open(file).eventsInDay(day);
+    }
+
+    @Benchmark
+    public List<Event> rebuildWithAddEvent() {
+        Agenda agenda = new Agenda();
+        events.forEach(agenda::addEvent);
+        return agenda.eventsInDay(day);
+    }
+
+    @Benchmark
+    public List<Event> rebuildWithAddAll() {
+        Agenda agenda = new Agenda();
+        agenda.addAll(events);
+        return agenda.eventsInDay(day);
+    }
+
+    @Benchmark
+    public List<Event> rebuildWithParallelAddAll() {
+        Agenda agenda = new Agenda();
+        agenda.addAll(events, ForkJoinPool.commonPool());
+        return agenda.eventsInDay(day);
+    }
+}
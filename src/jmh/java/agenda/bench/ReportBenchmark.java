@@ -0,0 +1,87 @@
+package agenda.bench;
+
+import agenda.Agenda;
+import agenda.ColumnarAgenda;
+import agenda.Event;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Description : the events of many scattered days at once, with
+ * {@code eventsInDays} compared with one {@code eventsInDay} per day
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms8g", "-Xmx8g" })
+@State(Scope.Benchmark)
+public class ReportBenchmark {
+
+    @Param({ "100000", "1000000" })
+    int size;
+
+    @Param({ "16", "256" })
+    int dayCount;
+
+    Agenda agenda;
+
+    ColumnarAgenda columnar;
+
+    List<LocalDate> days;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Event> events = Fixtures.events(size, 0.2, 5, 0.05, size / 10 + 1);
+        agenda = new Agenda();
+        agenda.addAll(events);
+        columnar = new ColumnarAgenda();
+        events.forEach(columnar::addEvent);
+        days = List.of(Fixtures.days(dayCount));
+    }
+
+    @Benchmark
+    public Map<LocalDate, List<Event>> eventsInDays() {
+        return agenda.eventsInDays(days);
+    }
+
+    @Benchmark
+    public Map<LocalDate, List<Event>> eventsInDayPerDay() {
+        Map<LocalDate, List<Event>> found = new HashMap<>();
+        for (LocalDate day : days) {
+            found.put(day, agenda.eventsInDay(day));
+        }
+        return found;
+    }
+
+    @Benchmark
+    public Map<LocalDate, List<Event>> columnarEventsInDays() {
+        return columnar.eventsInDays(days);
+    }
+
+    @Benchmark
+    public Map<LocalDate, List<Event>> columnarEventsInDayPerDay() {
+        Map<LocalDate, List<Event>> found = new HashMap<>();
+        for (LocalDate day : days) {
+            found.put(day, columnar.eventsInDay(day));
+        }
+        return found;
+    }
+}
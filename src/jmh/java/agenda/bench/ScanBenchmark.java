@@ -0,0 +1,76 @@
+package agenda.bench;
+
+import agenda.ColumnarAgenda;
+import agenda.Event;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Description : scans of a {@link ColumnarAgenda}, sequential or split into
+ * chunks on a pool of a given number of workers
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms8g", "-Xmx8g" })
+@State(Scope.Benchmark)
+public class ScanBenchmark {
+
+    @Param({ "1000000", "10000000" })
+    int size;
+
+    @Param({ "1", "4", "32" })
+    int parallelism;
+
+    ColumnarAgenda agenda;
+
+    ForkJoinPool pool;
+
+    LocalDate day;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        agenda = new ColumnarAgenda();
+        Fixtures.events(size, 0.2, 5, 0.05, size / 10 + 1).forEach(agenda::addEvent);
+        pool = new ForkJoinPool(parallelism);
+        day = Fixtures.days(1)[0];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<Event> eventsInDay() {
+        return agenda.eventsInDay(day);
+    }
+
+    @Benchmark
+    public List<Event> eventsInDayParallel() {
+        return agenda.eventsInDay(day, pool);
+    }
+
+    @Benchmark
+    public List<Event> findByTitleParallel() {
+        return agenda.findByTitle(Fixtures.title(42), pool);
+    }
+}
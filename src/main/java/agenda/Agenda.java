@@ -1,24 +1,546 @@
 package agenda;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Description : An agenda that stores events
  */
 public class Agenda {
 
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    /**
+     * Largest gap, in days, between two requested days swept together by
+     * {@link #eventsInDays(Collection)}
+     */
+    private static final long SWEEP_GAP = 7;
+
+    /**
+     * The events, by position ; a removed event leaves a null (tombstone) until
+     * the next compaction
+     */
+    private final ArrayList<Event> events = new ArrayList<>();
+
+    /**
+     * Position of each event of this agenda
+     */
+    private final Map<Event, Integer> positions = new IdentityHashMap<>();
+
+    /**
+     * Number of tombstones in the events
+     */
+    private int removed;
+
+    /**
+     * Non-repeating events, indexed by the days they cover (epoch days, inclusive)
+     */
+    private final IntervalTree simpleEvents = new IntervalTree();
+
+    /**
+     * Time taken by the non-repeating events
+     */
+    private final BusyIntervals busy = new BusyIntervals();
+
+    /**
+     * Daily events, indexed by the range of days where they are active
+     */
+    private final IntervalTree dailyEvents = new IntervalTree();
+
+    /**
+     * Weekly events, one index per residue of their start day modulo 7
+     */
+    private final IntervalTree[] weeklyEvents = newIndexes(7);
+
+    /**
+     * Monthly events, one index per day of month of their start day
+     */
+    private final IntervalTree[] monthlyEvents = newIndexes(31);
+
+    /**
+     * Positions of the events repeating with any other frequency
+     */
+    private final NavigableSet<Integer> otherRepeatingEvents = new TreeSet<>();
+
+    /**
+     * Events by title
+     */
+    private final Map<String, Set<Event>> byTitle = new HashMap<>();
+
+    /**
+     * Events by title in lower case, sorted for prefix searches
+     */
+    private final NavigableMap<String, Set<Event>> byFoldedTitle = new TreeMap<>();
+
+    /**
+     * Number of days after its start day that an occurrence of a repeating event
+     * can reach, at most
+     */
+    private long repeatingSpanInDays;
+
+    /**
+     * The results of the days queried most recently, null if disabled
+     */
+    private DayCache dayCache;
+
+    /**
+     * Listens to the changes of the events of this agenda, null if it does not
+     */
+    private final Tracker tracker;
+
     /**
-     * Adds an event to this agenda
+     * Told of the events added to, removed from and changed in this agenda
+     */
+    private final List<Observer> observers = new ArrayList<>();
+
+    public Agenda() {
+        this(true);
+    }
+
+    /**
+     * @param trackChanges false for an agenda that must not listen to its events,
+     * such as a snapshot shared between threads or a short-lived agenda : its
+     * events must not change once added
+     */
+    Agenda(boolean trackChanges) {
+        this.tracker = trackChanges ? new Tracker() : null;
+    }
+
+    /**
+     * Adds an event to this agenda. An event already in this agenda is not added
+     * again.
+     * <p>
+     * The agenda then listens to the changes of the event (start, duration,
+     * repetition, exceptions, termination) to update its indexes, unless another
+     * agenda already does : an event added to several agendas must be changed
+     * through {@link #updateEvent(Event, Consumer)} of each of the others.
      *
      * @param e the event to add
      */
-    private final List<Event> events = new ArrayList<>();
-
     public void addEvent(Event e) {
-        // TODO : implémenter cette méthode
-        events.add(e);    
+        if (positions.containsKey(e)) {
+            return;
+        }
+        int position = events.size();
+        events.add(e);
+        positions.put(e, position);
+        listen(e);
+        byTitle.computeIfAbsent(e.getTitle(), t -> new LinkedHashSet<>()).add(e);
+        if (e.getTitle() != null) {
+            byFoldedTitle.computeIfAbsent(fold(e.getTitle()), t -> new LinkedHashSet<>()).add(e);
+        }
+        index(e, position, false);
+        if (dayCache != null) {
+            dayCache.invalidate(e);
+        }
+        for (Observer observer : observers) {
+            observer.added(e);
+        }
+    }
+
+    /**
+     * Removes an event from this agenda. Its indexes are updated in O(log n) and
+     * its position becomes a tombstone, until the tombstones make half of the
+     * positions and the agenda is compacted.
+     *
+     * @param e the event to remove
+     * @return true if the event was in this agenda
+     */
+    public boolean removeEvent(Event e) {
+        Integer position = positions.remove(e);
+        if (position == null) {
+            return false;
+        }
+        if (tracker != null && e.getChangeListener() == tracker) {
+            e.setChangeListener(null);
+        }
+        unindex(e, position);
+        removeFrom(byTitle, e.getTitle(), e);
+        if (e.getTitle() != null) {
+            removeFrom(byFoldedTitle, fold(e.getTitle()), e);
+        }
+        events.set(position, null);
+        removed++;
+        if (dayCache != null) {
+            dayCache.invalidate(e);
+        }
+        if (removed >= 64 && removed * 2L > events.size()) {
+            compact();
+        }
+        for (Observer observer : observers) {
+            observer.removed(e);
+        }
+        return true;
+    }
+
+    /**
+     * Changes an event of this agenda in place (start, duration, repetition,
+     * exceptions, termination) and updates its indexes. The event keeps its
+     * position.
+     *
+     * @param e the event to change
+     * @param change the change, applied to the event
+     * @return true if the event is in this agenda, false if it was not changed
+     * @see Event#setStart(LocalDateTime)
+     * @see Event#setDuration(Duration)
+     * @see Event#setRepetition(java.time.temporal.ChronoUnit)
+     */
+    public boolean updateEvent(Event e, Consumer<Event> change) {
+        Integer position = positions.get(e);
+        if (position == null) {
+            return false;
+        }
+        // The change is handled once, as a whole, rather than setter by setter
+        Event.ChangeListener listener = e.getChangeListener();
+        boolean listening = tracker != null && listener == tracker;
+        if (listening) {
+            e.setChangeListener(null);
+        }
+        Set<Long> before = dayCache == null ? null : dayCache.daysOf(e);
+        unindex(e, position);
+        try {
+            change.accept(e);
+        } finally {
+            index(e, position, false);
+            if (dayCache != null) {
+                dayCache.invalidate(e, before);
+            }
+            if (listening) {
+                e.setChangeListener(listener);
+            }
+        }
+        for (Observer observer : observers) {
+            observer.changed(e);
+        }
+        return true;
+    }
+
+    /**
+     * Adds events to this agenda, in their order. The events must be fully
+     * defined (repetition, exceptions, termination) before being added.
+     * <p>
+     * The events are appended, then each index is rebuilt once from its sorted
+     * intervals, unless the batch is small compared to this agenda.
+     *
+     * @param batch the events to add
+     */
+    public void addAll(Collection<Event> batch) {
+        addAll(batch, null);
+    }
+
+    /**
+     * Adds events to this agenda, in their order, building the indexes in parallel
+     *
+     * @param batch the events to add
+     * @param pool the pool building the indexes, null to build them in this thread
+     * @see #addAll(Collection)
+     */
+    public void addAll(Collection<Event> batch, ForkJoinPool pool) {
+        // Rebuilding an index costs its size : not worth it for a few events
+        if (batch.size() * 8L < events.size()) {
+            batch.forEach(this::addEvent);
+            return;
+        }
+        int first = events.size();
+        append(batch, pool);
+        if (dayCache != null) {
+            dayCache.clear();
+        }
+        for (Observer observer : observers) {
+            events.subList(first, events.size()).forEach(observer::added);
+        }
+    }
+
+    /**
+     * Appends events and rebuilds each index once
+     */
+    private void append(Collection<Event> batch, ForkJoinPool pool) {
+        int first = events.size();
+        events.ensureCapacity(first + batch.size());
+        for (Event e : batch) {
+            if (positions.putIfAbsent(e, events.size()) == null) {
+                events.add(e);
+                listen(e);
+            }
+        }
+        for (int position = first; position < events.size(); position++) {
+            index(events.get(position), position, true);
+        }
+        boolean parallel = pool != null;
+        List<Runnable> builds = new ArrayList<>();
+        builds.add(() -> indexTitles(events.subList(first, events.size())));
+        builds.add(() -> simpleEvents.build(parallel));
+        builds.add(() -> busy.build(parallel));
+        builds.add(() -> dailyEvents.build(parallel));
+        for (IntervalTree index : weeklyEvents) {
+            builds.add(() -> index.build(parallel));
+        }
+        for (IntervalTree index : monthlyEvents) {
+            builds.add(() -> index.build(parallel));
+        }
+        if (parallel) {
+            List<ForkJoinTask<?>> tasks = builds.stream().<ForkJoinTask<?>>map(ForkJoinTask::adapt).toList();
+            pool.submit(() -> ForkJoinTask.invokeAll(tasks)).join();
+        } else {
+            builds.forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * Adds an event to the indexes by date
+     *
+     * @param defer true to add it at the next build of the indexes
+     */
+    private void index(Event e, int position, boolean defer) {
+        LocalDate startDay = e.getStart().toLocalDate();
+        if (!e.hasRepetition()) {
+            LocalDateTime end = e.getStart().plus(e.getDuration());
+            if (defer) {
+                simpleEvents.defer(startDay.toEpochDay(), end.toLocalDate().toEpochDay(), position);
+                busy.defer(epochSecond(e.getStart()), epochSecond(end));
+            } else {
+                simpleEvents.insert(startDay.toEpochDay(), end.toLocalDate().toEpochDay(), position);
+                busy.add(epochSecond(e.getStart()), epochSecond(end));
+            }
+            return;
+        }
+        repeatingSpanInDays = Math.max(repeatingSpanInDays, e.spanInDays());
+        LocalDate termination = e.getTerminationDate();
+        long lastDay = termination == null ? Long.MAX_VALUE : termination.toEpochDay();
+        IntervalTree index = switch (e.getRepetition().getFrequency()) {
+            case DAYS -> dailyEvents;
+            case WEEKS -> weeklyEvents[weekResidue(startDay)];
+            case MONTHS -> monthlyEvents[startDay.getDayOfMonth() - 1];
+            default -> null;
+        };
+        if (index == null) {
+            otherRepeatingEvents.add(position);
+        } else if (defer) {
+            index.defer(startDay.toEpochDay(), lastDay, position);
+        } else {
+            index.insert(startDay.toEpochDay(), lastDay, position);
+        }
+    }
+
+    /**
+     * Adds events to the indexes by title, grouping them before updating the
+     * sorted index
+     */
+    private void indexTitles(List<Event> batch) {
+        Map<String, List<Event>> folded = new HashMap<>();
+        for (Event e : batch) {
+            byTitle.computeIfAbsent(e.getTitle(), t -> new LinkedHashSet<>()).add(e);
+            if (e.getTitle() != null) {
+                folded.computeIfAbsent(fold(e.getTitle()), t -> new ArrayList<>()).add(e);
+            }
+        }
+        folded.forEach((title, l) -> byFoldedTitle.computeIfAbsent(title, t -> new LinkedHashSet<>()).addAll(l));
+    }
+
+    /**
+     * Removes an event from the indexes by date
+     */
+    private void unindex(Event e, int position) {
+        long startDay = e.startEpochDay();
+        if (!e.hasRepetition()) {
+            simpleEvents.remove(startDay, position);
+            Map.Entry<Long, Long> block = busy.removeBlock(epochSecond(e.getStart()));
+            if (block != null) {
+                // Rebuild the busy block from the other events it holds
+                long blockStart = block.getKey();
+                long blockEnd = block.getValue();
+                simpleEvents.query(Math.floorDiv(blockStart, SECONDS_PER_DAY), Math.floorDiv(blockEnd, SECONDS_PER_DAY), p -> {
+                    Event other = events.get(p);
+                    long start = epochSecond(other.getStart());
+                    if (start == blockStart || start > blockStart && start < blockEnd) {
+                        busy.add(start, epochSecond(other.getStart().plus(other.getDuration())));
+                    }
+                });
+            }
+            return;
+        }
+        switch (e.getRepetition().getFrequency()) {
+            case DAYS -> dailyEvents.remove(startDay, position);
+            case WEEKS -> weeklyEvents[Math.floorMod(startDay, 7)].remove(startDay, position);
+            case MONTHS -> monthlyEvents[e.getStart().getDayOfMonth() - 1].remove(startDay, position);
+            default -> otherRepeatingEvents.remove(position);
+        }
+    }
+
+    /**
+     * Drops the tombstones : the live events get new positions and every index
+     * is rebuilt
+     */
+    private void compact() {
+        List<Event> live = getEvents();
+        events.clear();
+        positions.clear();
+        removed = 0;
+        byTitle.clear();
+        byFoldedTitle.clear();
+        simpleEvents.clear();
+        busy.clear();
+        dailyEvents.clear();
+        for (IntervalTree index : weeklyEvents) {
+            index.clear();
+        }
+        for (IntervalTree index : monthlyEvents) {
+            index.clear();
+        }
+        otherRepeatingEvents.clear();
+        repeatingSpanInDays = 0;
+        // The results of the days do not change
+        append(live, null);
+    }
+
+    /**
+     * @return the listener that updates the indexes of this agenda around each
+     * change of an event, null if this agenda does not track changes
+     */
+    Event.ChangeListener tracker() {
+        return tracker;
+    }
+
+    /**
+     * Told of the events added to and removed from an agenda, and of the changes
+     * of its events that it tracks or makes by {@link #updateEvent(Event, Consumer)},
+     * once its indexes are updated
+     */
+    interface Observer {
+
+        void added(Event e);
+
+        void removed(Event e);
+
+        void changed(Event e);
+    }
+
+    /**
+     * @param observer told of the events added to, removed from and changed in
+     * this agenda from now on
+     */
+    void addObserver(Observer observer) {
+        observers.add(observer);
+    }
+
+    /**
+     * @param observer no longer told of the events added, removed and changed
+     * @return true if it was
+     */
+    boolean removeObserver(Observer observer) {
+        return observers.remove(observer);
+    }
+
+    /**
+     * Listens to the changes of an event, unless another agenda does
+     */
+    private void listen(Event e) {
+        if (tracker != null && e.getChangeListener() == null) {
+            e.setChangeListener(tracker);
+        }
+    }
+
+    /**
+     * Updates the indexes and the day cache around each change of an event of
+     * this agenda
+     */
+    private final class Tracker implements Event.ChangeListener {
+
+        /**
+         * The cached days the changing event occurred on before its change
+         */
+        private Set<Long> before;
+
+        @Override
+        public void beforeChange(Event e) {
+            Integer position = positions.get(e);
+            if (position != null) {
+                before = dayCache == null ? null : dayCache.daysOf(e);
+                unindex(e, position);
+            }
+        }
+
+        @Override
+        public void afterChange(Event e) {
+            Integer position = positions.get(e);
+            if (position != null) {
+                index(e, position, false);
+                if (dayCache != null) {
+                    dayCache.invalidate(e, before);
+                }
+                before = null;
+                for (Observer observer : observers) {
+                    observer.changed(e);
+                }
+            }
+        }
+    }
+
+    private static void removeFrom(Map<String, Set<Event>> index, String title, Event e) {
+        Set<Event> titled = index.get(title);
+        titled.remove(e);
+        if (titled.isEmpty()) {
+            index.remove(title);
+        }
+    }
+
+    /**
+     * Adds an event to this agenda if there is room for it
+     *
+     * @param e the event to add
+     * @return true if the event was added, false if it overlaps another event
+     * @see #isFreeFor(Event)
+     */
+    public boolean addIfFree(Event e) {
+        if (!isFreeFor(e)) {
+            return false;
+        }
+        addEvent(e);
+        return true;
+    }
+
+    /**
+     * Adds events to this agenda if there is room for all of them : none of them
+     * overlaps an event of this agenda or another one of these events
+     *
+     * @param candidates the events to add
+     * @return true if the events were added, false if none was added
+     */
+    public boolean addAllIfFree(Collection<Event> candidates) {
+        Agenda batch = new Agenda(false);
+        for (Event e : candidates) {
+            if (!isFreeFor(e) || !batch.isFreeFor(e)) {
+                return false;
+            }
+            batch.addEvent(e);
+        }
+        candidates.forEach(this::addEvent);
+        return true;
+    }
+
+    /**
+     * @return the events of this agenda, in the order they were added
+     */
+    public List<Event> getEvents() {
+        if (removed == 0) {
+            return Collections.unmodifiableList(events);
+        }
+        List<Event> live = new ArrayList<>(events.size() - removed);
+        for (Event e : events) {
+            if (e != null) {
+                live.add(e);
+            }
+        }
+        return live;
     }
 
     /**
@@ -28,51 +550,365 @@ public class Agenda {
      * @return a list of events that occur on that day
      */
     public List<Event> eventsInDay(LocalDate day) {
-        // TODO : implémenter cette méthode
-        List<Event> l = new ArrayList<>();
-        for (Event e : events) {
-            if (e.isInDay(day)){
-                l.add(e);
-            } 
+        long epochDay = day.toEpochDay();
+        if (dayCache == null) {
+            return compute(epochDay);
+        }
+        List<Event> l = dayCache.get(epochDay);
+        if (l == null) {
+            l = compute(epochDay);
+            dayCache.put(epochDay, l);
+        }
+        return l;
+    }
+
+    /**
+     * Keeps the results of eventsInDay for the last days queried, up to a number
+     * of days, the least recently queried day being evicted first. Adding,
+     * removing or updating an event only drops the days it occurs on.
+     * <p>
+     * Disabled by default : queries then never modify the agenda, which can be
+     * read by several threads.
+     *
+     * @param days the number of days kept, 0 to disable the cache
+     */
+    public void setDayCacheCapacity(int days) {
+        if (days < 0) {
+            throw new IllegalArgumentException("Negative capacity : " + days);
+        }
+        dayCache = days == 0 ? null : new DayCache(days);
+    }
+
+    /**
+     * @return the counters of the day cache since its capacity was set, all 0
+     * if it is disabled
+     */
+    public DayCacheStats dayCacheStats() {
+        return dayCache == null ? new DayCacheStats(0, 0, 0, 0, 0, 0) : dayCache.stats();
+    }
+
+    private List<Event> compute(long epochDay) {
+        List<Integer> found = new ArrayList<>();
+        simpleEvents.query(epochDay, epochDay, found::add);
+        // Only the repeating events whose residue class matches a day where an
+        // occurrence reaching this day may start are candidates
+        long firstStart = epochDay - repeatingSpanInDays;
+        IntConsumer occurs = position -> {
+            if (events.get(position).isInDay(epochDay)) {
+                found.add(position);
+            }
+        };
+        dailyEvents.query(firstStart, epochDay, occurs);
+        for (long start = Math.max(firstStart, epochDay - 6); start <= epochDay; start++) {
+            weeklyEvents[Math.floorMod(start, 7)].query(firstStart, epochDay, occurs);
+        }
+        boolean[] daysOfMonth = new boolean[monthlyEvents.length];
+        // 62 consecutive days hold every day of month
+        for (long start = Math.max(firstStart, epochDay - 61); start <= epochDay; start++) {
+            int dayOfMonth = EpochDays.dayOfMonth(start);
+            if (!daysOfMonth[dayOfMonth - 1]) {
+                daysOfMonth[dayOfMonth - 1] = true;
+                monthlyEvents[dayOfMonth - 1].query(firstStart, epochDay, occurs);
+            }
+        }
+        for (int position : otherRepeatingEvents) {
+            if (events.get(position).isInDay(epochDay)) {
+                found.add(position);
+            }
+        }
+        // Keep the insertion order of the agenda
+        found.sort(null);
+        List<Event> l = new ArrayList<>(found.size());
+        for (int position : found) {
+            l.add(events.get(position));
         }
         return l;
     }
 
+    /**
+     * Computes the events that occur on each of several days. The days are sorted
+     * and the events active around each run of close days are visited once,
+     * tested against every requested day of the run they may reach. An isolated
+     * day is queried as by {@link #eventsInDay(LocalDate)}.
+     *
+     * @param days the days to test, in any order
+     * @return for each distinct day, in chronological order, the list of events
+     * that occur on that day, in the order they were added
+     * @see #eventsInDay(LocalDate)
+     */
+    public Map<LocalDate, List<Event>> eventsInDays(Collection<LocalDate> days) {
+        long[] sorted = days.stream().mapToLong(LocalDate::toEpochDay).sorted().distinct().toArray();
+        List<List<Event>> found = new ArrayList<>(sorted.length);
+        for (int i = 0; i < sorted.length; i++) {
+            found.add(new ArrayList<>());
+        }
+        for (int from = 0, to; from < sorted.length; from = to) {
+            to = from + 1;
+            while (to < sorted.length && sorted[to] - sorted[to - 1] <= SWEEP_GAP) {
+                to++;
+            }
+            if (to - from == 1) {
+                found.set(from, eventsInDay(LocalDate.ofEpochDay(sorted[from])));
+            } else {
+                sweep(sorted, from, to, found);
+            }
+        }
+        Map<LocalDate, List<Event>> result = new LinkedHashMap<>();
+        for (int i = 0; i < sorted.length; i++) {
+            result.put(LocalDate.ofEpochDay(sorted[i]), found.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Adds the events active on days[from..to[ to the lists of the days they occur on
+     */
+    private void sweep(long[] days, int from, int to, List<List<Event>> found) {
+        long first = days[from];
+        long last = days[to - 1];
+        long firstStart = first - repeatingSpanInDays;
+        List<Integer> candidates = new ArrayList<>(otherRepeatingEvents);
+        simpleEvents.query(first, last, candidates::add);
+        dailyEvents.query(firstStart, last, candidates::add);
+        // As in eventsInDay, only the residue classes where an occurrence reaching
+        // one of the days may start are candidates
+        boolean[] daysOfWeek = new boolean[weeklyEvents.length];
+        boolean[] daysOfMonth = new boolean[monthlyEvents.length];
+        for (int i = from; i < to; i++) {
+            long day = days[i];
+            for (long start = Math.max(day - repeatingSpanInDays, day - 6); start <= day; start++) {
+                daysOfWeek[Math.floorMod(start, 7)] = true;
+            }
+            for (long start = Math.max(day - repeatingSpanInDays, day - 61); start <= day; start++) {
+                daysOfMonth[EpochDays.dayOfMonth(start) - 1] = true;
+            }
+        }
+        for (int r = 0; r < weeklyEvents.length; r++) {
+            if (daysOfWeek[r]) {
+                weeklyEvents[r].query(firstStart, last, candidates::add);
+            }
+        }
+        for (int d = 0; d < monthlyEvents.length; d++) {
+            if (daysOfMonth[d]) {
+                monthlyEvents[d].query(firstStart, last, candidates::add);
+            }
+        }
+        // Keep the insertion order of the agenda in every list
+        candidates.sort(null);
+        for (int position : candidates) {
+            Event e = events.get(position);
+            long lastDay = e.hasRepetition() ? e.getRepetition().lastEpochDay() : e.startEpochDay();
+            long lastReached = lastDay == Long.MAX_VALUE ? lastDay : lastDay + e.spanInDays();
+            int i = Arrays.binarySearch(days, from, to, e.startEpochDay());
+            for (i = i < 0 ? -i - 1 : i; i < to && days[i] <= lastReached; i++) {
+                if (!e.hasRepetition() || e.isInDay(days[i])) {
+                    found.get(i).add(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the occurrences of the events between two days. Each repetition is
+     * expanded once over the whole range.
+     *
+     * @param from the first day (inclusive)
+     * @param to the last day (inclusive)
+     * @return the occurrences, grouped by event in the order the events were
+     * added, computed lazily
+     */
+    public Stream<Occurrence> eventsBetween(LocalDate from, LocalDate to) {
+        long first = from.toEpochDay();
+        long last = to.toEpochDay();
+        List<Integer> found = repeatingEventsActive(first - repeatingSpanInDays, last);
+        simpleEvents.query(first, last, found::add);
+        found.sort(null);
+        return found.stream()
+                .map(events::get)
+                .flatMap(e -> e.occurrencesBetween(from, to).map(start -> new Occurrence(e, start)));
+    }
+
+    /**
+     * Computes the occurrences of the events that start at or after a given time,
+     * lazily. A min-heap holds the next occurrence of each event still active at
+     * this time : it is built in O(n), then each occurrence costs O(log n).
+     * <p>
+     * The agenda must not be modified while the occurrences are consumed.
+     *
+     * @param from a time
+     * @return the occurrences starting at or after this time, in chronological
+     * order, then in the order the events were added
+     */
+    public Stream<Occurrence> upcoming(LocalDateTime from) {
+        long fromDay = from.toLocalDate().toEpochDay();
+        List<Integer> active = repeatingEventsActive(fromDay, Long.MAX_VALUE);
+        simpleEvents.query(fromDay, Long.MAX_VALUE, active::add);
+        List<Upcoming> next = new ArrayList<>(active.size());
+        for (int position : active) {
+            Event e = events.get(position);
+            LocalDateTime start = e.nextOccurrenceFrom(from);
+            if (start != null) {
+                next.add(new Upcoming(e, position, start));
+            }
+        }
+        // Heapified in O(n)
+        PriorityQueue<Upcoming> heap = new PriorityQueue<>(next);
+        Iterator<Occurrence> occurrences = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heap.isEmpty();
+            }
+
+            @Override
+            public Occurrence next() {
+                Upcoming first = heap.poll();
+                if (first == null) {
+                    throw new NoSuchElementException();
+                }
+                LocalDateTime following = first.event.nextOccurrenceAfter(first.start);
+                if (following != null) {
+                    heap.add(new Upcoming(first.event, first.position, following));
+                }
+                return new Occurrence(first.event, first.start);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(occurrences,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * The next occurrence of an event, ordered by start then by position
+     */
+    private record Upcoming(Event event, int position, LocalDateTime start) implements Comparable<Upcoming> {
+
+        @Override
+        public int compareTo(Upcoming other) {
+            int c = start.compareTo(other.start);
+            return c != 0 ? c : Integer.compare(position, other.position);
+        }
+    }
+
     /**
      * Trouver les événements de l'agenda en fonction de leur titre
      * @param title le titre à rechercher
      * @return les événements qui ont le même titre
      */
     public List<Event> findByTitle(String title) {
+        return new ArrayList<>(byTitle.getOrDefault(title, Set.of()));
+    }
+
+    /**
+     * Trouver les événements de l'agenda en fonction de leur titre, sans tenir
+     * compte de la casse
+     * @param title le titre à rechercher
+     * @return les événements qui ont le même titre, à la casse près
+     */
+    public List<Event> findByTitleIgnoreCase(String title) {
+        return new ArrayList<>(byFoldedTitle.getOrDefault(fold(title), Set.of()));
+    }
+
+    /**
+     * Trouver les événements de l'agenda dont le titre commence par un préfixe,
+     * sans tenir compte de la casse
+     * @param prefix le début du titre à rechercher
+     * @return les événements dont le titre commence par ce préfixe, triés par titre
+     */
+    public List<Event> findByTitlePrefix(String prefix) {
+        String folded = fold(prefix);
         List<Event> l = new ArrayList<>();
-        for (Event e : events) {
-            if (e.getTitle().equals(title)){
-                l.add(e);
-            } 
+        for (Map.Entry<String, Set<Event>> entry : byFoldedTitle.tailMap(folded, true).entrySet()) {
+            if (!entry.getKey().startsWith(folded)) {
+                break;
+            }
+            l.addAll(entry.getValue());
         }
         return l;
     }
 
     /**
-     * Déterminer s’il y a de la place dans l'agenda pour un événement (aucun autre événement au même moment)
-     * @param e L'événement à tester (on se limitera aux événements sans répétition)
+     * Déterminer s’il y a de la place dans l'agenda pour un événement (aucun autre
+     * événement au même moment), en tenant compte des répétitions
+     * @param e L'événement à tester
      * @return vrai s’il y a de la place dans l'agenda pour cet événement
      */
     public boolean isFreeFor(Event e) {
-        LocalDateTime start1 = e.getStart();
-        LocalDateTime end1 = e.getStart().plus(e.getDuration());
-
-        for (Event e1 : events) {
-            if (e1.hasRepetition()){
-                continue; 
-            } 
-
-            LocalDateTime start2 = e1.getStart();
-            LocalDateTime end2 = e1.getStart().plus(e1.getDuration());
+        if (!e.hasRepetition()) {
+            return isFreeFor(e.getStart(), e.getDuration());
+        }
+        long firstDay = e.getStart().toLocalDate().toEpochDay();
+        LocalDate termination = e.getTerminationDate();
+        long lastDay = termination == null ? Long.MAX_VALUE : termination.toEpochDay();
+        long from = epochSecond(e.getStart());
+        long to = termination == null ? Long.MAX_VALUE
+                : epochSecond(termination.atTime(e.getStart().toLocalTime()).plus(e.getDuration()));
+        if (busy.anyBlock(from, to, (start, end) -> Conflicts.overlaps(e, start, end))) {
+            return false;
+        }
+        for (int position : repeatingEventsActive(firstDay - repeatingSpanInDays - 1,
+                lastDay == Long.MAX_VALUE ? lastDay : lastDay + e.spanInDays())) {
+            if (Conflicts.overlaps(e, events.get(position))) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-            if (start1.isBefore(end2) && start2.isBefore(end1))
+    /**
+     * Déterminer s’il y a de la place dans l'agenda sur un créneau (aucun autre
+     * événement au même moment, y compris les occurrences des événements répétitifs),
+     * à la seconde près
+     * @param start le début du créneau
+     * @param duration la durée du créneau
+     * @return vrai s’il y a de la place dans l'agenda sur ce créneau
+     */
+    public boolean isFreeFor(LocalDateTime start, Duration duration) {
+        long from = epochSecond(start);
+        long to = epochSecond(start.plus(duration));
+        if (busy.overlaps(from, to)) {
+            return false;
+        }
+        for (int position : repeatingEventsActive(start.toLocalDate().toEpochDay() - repeatingSpanInDays - 1,
+                start.plus(duration).toLocalDate().toEpochDay())) {
+            if (Conflicts.overlaps(events.get(position), from, to)) {
                 return false;
+            }
         }
         return true;
     }
+
+    /**
+     * Finds the repeating events whose range of activity (start to termination)
+     * overlaps a range of days
+     */
+    private List<Integer> repeatingEventsActive(long firstDay, long lastDay) {
+        List<Integer> found = new ArrayList<>(otherRepeatingEvents);
+        dailyEvents.query(firstDay, lastDay, found::add);
+        for (IntervalTree index : weeklyEvents) {
+            index.query(firstDay, lastDay, found::add);
+        }
+        for (IntervalTree index : monthlyEvents) {
+            index.query(firstDay, lastDay, found::add);
+        }
+        return found;
+    }
+
+    private static String fold(String title) {
+        return title.toLowerCase(Locale.ROOT);
+    }
+
+    private static long epochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static int weekResidue(LocalDate day) {
+        return Math.floorMod(day.toEpochDay(), 7);
+    }
+
+    private static IntervalTree[] newIndexes(int count) {
+        IntervalTree[] indexes = new IntervalTree[count];
+        for (int i = 0; i < count; i++) {
+            indexes[i] = new IntervalTree();
+        }
+        return indexes;
+    }
 }
@@ -0,0 +1,211 @@
+package agenda;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Description : the time taken by a set of events, as disjoint busy intervals
+ * [start, end[ in epoch seconds.
+ * <p>
+ * Overlapping intervals are merged when they are added, so the blocks are sorted
+ * both by start and by end, and a conflict check is a single floor lookup.
+ */
+class BusyIntervals {
+
+    /**
+     * A test applied to a busy block
+     */
+    interface BlockTest {
+        boolean test(long start, long end);
+    }
+
+    /**
+     * Start of each busy block to its end
+     */
+    private final NavigableMap<Long, Long> blocks = new TreeMap<>();
+
+    /**
+     * Intervals waiting for {@link #build(boolean)}
+     */
+    private long[] deferredStarts = new long[0];
+    private long[] deferredEnds = new long[0];
+    private int deferred;
+
+    /**
+     * Marks [start, end[ as busy
+     *
+     * @param start the start of the interval, in epoch seconds
+     * @param end the end of the interval (exclusive), in epoch seconds
+     */
+    void add(long start, long end) {
+        Map.Entry<Long, Long> floor = blocks.floorEntry(start);
+        if (floor != null && (floor.getValue() > start || floor.getKey() == start)) {
+            start = floor.getKey();
+            end = Math.max(end, floor.getValue());
+            blocks.remove(start);
+        }
+        // Blocks starting inside [start, end[ overlap the new interval
+        Map.Entry<Long, Long> next = blocks.higherEntry(start);
+        while (next != null && next.getKey() < end) {
+            end = Math.max(end, next.getValue());
+            blocks.remove(next.getKey());
+            next = blocks.higherEntry(start);
+        }
+        blocks.put(start, end);
+    }
+
+    /**
+     * Removes the busy block that holds an instant
+     *
+     * @param start an instant, in epoch seconds
+     * @return the block removed, null if no block starts at or before this instant
+     */
+    Map.Entry<Long, Long> removeBlock(long start) {
+        Map.Entry<Long, Long> floor = blocks.floorEntry(start);
+        if (floor != null) {
+            blocks.remove(floor.getKey());
+        }
+        return floor;
+    }
+
+    /**
+     * Removes every busy block
+     */
+    void clear() {
+        blocks.clear();
+        deferred = 0;
+    }
+
+    /**
+     * Marks [start, end[ as busy at the next {@link #build(boolean)} : queries do
+     * not see it before
+     *
+     * @param start the start of the interval, in epoch seconds
+     * @param end the end of the interval (exclusive), in epoch seconds
+     */
+    void defer(long start, long end) {
+        if (deferred == deferredStarts.length) {
+            deferredStarts = Arrays.copyOf(deferredStarts, Math.max(16, deferred * 2));
+            deferredEnds = Arrays.copyOf(deferredEnds, deferredStarts.length);
+        }
+        deferredStarts[deferred] = start;
+        deferredEnds[deferred] = end;
+        deferred++;
+    }
+
+    /**
+     * Adds the deferred intervals : they are sorted with the current blocks, then
+     * merged in a single pass, as {@link #add(long, long)} would
+     *
+     * @param parallel true to sort the intervals in parallel, in the current ForkJoinPool
+     */
+    void build(boolean parallel) {
+        if (deferred == 0) {
+            return;
+        }
+        int count = deferred + blocks.size();
+        long[] starts = Arrays.copyOf(deferredStarts, count);
+        long[] ends = Arrays.copyOf(deferredEnds, count);
+        int i = deferred;
+        for (Map.Entry<Long, Long> block : blocks.entrySet()) {
+            starts[i] = block.getKey();
+            ends[i] = block.getValue();
+            i++;
+        }
+        deferredStarts = new long[0];
+        deferredEnds = new long[0];
+        deferred = 0;
+        int[] order = sortedByStart(starts, count, parallel);
+        blocks.clear();
+        long start = starts[order[0]];
+        long end = ends[order[0]];
+        for (int k = 1; k < count; k++) {
+            long nextStart = starts[order[k]];
+            if (end > nextStart || start == nextStart) {
+                end = Math.max(end, ends[order[k]]);
+            } else {
+                blocks.put(start, end);
+                start = nextStart;
+                end = ends[order[k]];
+            }
+        }
+        blocks.put(start, end);
+    }
+
+    /**
+     * Sorts the indexes of intervals by start. The start and the index are packed
+     * in a long to sort primitives, unless the starts are too far apart.
+     */
+    private static int[] sortedByStart(long[] starts, int count, boolean parallel) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            min = Math.min(min, starts[i]);
+            max = Math.max(max, starts[i]);
+        }
+        int indexBits = 32 - Integer.numberOfLeadingZeros(count);
+        int[] order = new int[count];
+        if (max - min >= 0 && max - min < 1L << (63 - indexBits)) {
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = (starts[i] - min) << indexBits | i;
+            }
+            if (parallel) {
+                Arrays.parallelSort(keys);
+            } else {
+                Arrays.sort(keys);
+            }
+            long mask = (1L << indexBits) - 1;
+            for (int i = 0; i < count; i++) {
+                order[i] = (int) (keys[i] & mask);
+            }
+            return order;
+        }
+        Integer[] boxed = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, Comparator.comparingLong(i -> starts[i]));
+        for (int i = 0; i < count; i++) {
+            order[i] = boxed[i];
+        }
+        return order;
+    }
+
+    /**
+     * Tests if [start, end[ overlaps a busy interval
+     *
+     * @param start the start of the interval, in epoch seconds
+     * @param end the end of the interval (exclusive), in epoch seconds
+     * @return true if some busy interval overlaps [start, end[
+     */
+    boolean overlaps(long start, long end) {
+        // The last block starting before "end" is the one that ends the latest
+        Map.Entry<Long, Long> before = blocks.lowerEntry(end);
+        return before != null && before.getValue() > start;
+    }
+
+    /**
+     * Tests if a busy block overlapping [start, end[ passes a test
+     *
+     * @param start the start of the interval, in epoch seconds
+     * @param end the end of the interval (exclusive), in epoch seconds
+     * @param test the test to apply to each overlapping block, in chronological order
+     * @return true as soon as a block passes the test
+     */
+    boolean anyBlock(long start, long end, BlockTest test) {
+        Long from = blocks.floorKey(start);
+        for (Map.Entry<Long, Long> block : blocks.tailMap(from == null ? start : from, true).entrySet()) {
+            if (block.getKey() >= end) {
+                break;
+            }
+            if (block.getValue() > start && test.test(block.getKey(), block.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
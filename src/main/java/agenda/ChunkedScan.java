@@ -0,0 +1,89 @@
+package agenda;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Description : a scan of positions [0, size[ split into chunks evaluated on a
+ * fork-join pool. Each chunk collects its results in order and the chunks are
+ * concatenated in order : the results are those of a sequential scan.
+ *
+ * @param <T> the type of the results
+ */
+final class ChunkedScan<T> extends RecursiveTask<List<T>> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Smallest chunk handed to a worker : below this size splitting costs more
+     * than it saves
+     */
+    private static final int MIN_CHUNK = 4096;
+
+    /**
+     * Scans a chunk of positions
+     *
+     * @param <T> the type of the results
+     */
+    @FunctionalInterface
+    interface Chunk<T> {
+
+        /**
+         * Adds the results of the positions [from, to[ to a list, in order
+         */
+        void scan(int from, int to, List<T> out);
+    }
+
+    /**
+     * The scan, never serialized : a task only runs in the pool that forked it
+     */
+    private final transient Chunk<T> chunk;
+    private final int from;
+    private final int to;
+    private final int leaf;
+
+    private ChunkedScan(Chunk<T> chunk, int from, int to, int leaf) {
+        this.chunk = chunk;
+        this.from = from;
+        this.to = to;
+        this.leaf = leaf;
+    }
+
+    /**
+     * Scans the positions [0, size[, in parallel if there are at least threshold
+     * of them and a pool is given
+     *
+     * @param size the number of positions
+     * @param threshold the number of positions below which the scan stays sequential
+     * @param pool the pool running the chunks, null for a sequential scan
+     * @param chunk the scan of a chunk
+     * @return the results, in the order of the positions
+     */
+    static <T> List<T> scan(int size, int threshold, ForkJoinPool pool, Chunk<T> chunk) {
+        if (pool == null || size < threshold || size < 2 * MIN_CHUNK) {
+            List<T> l = new ArrayList<>();
+            chunk.scan(0, size, l);
+            return l;
+        }
+        // A few chunks per worker so that a slow chunk does not hold the others
+        int leaf = Math.max(MIN_CHUNK, size / (pool.getParallelism() * 4));
+        return pool.invoke(new ChunkedScan<>(chunk, 0, size, leaf));
+    }
+
+    @Override
+    protected List<T> compute() {
+        if (to - from <= leaf) {
+            List<T> l = new ArrayList<>();
+            chunk.scan(from, to, l);
+            return l;
+        }
+        int middle = (from + to) >>> 1;
+        ChunkedScan<T> right = new ChunkedScan<>(chunk, middle, to, leaf);
+        right.fork();
+        List<T> l = new ChunkedScan<>(chunk, from, middle, leaf).compute();
+        l.addAll(right.join());
+        return l;
+    }
+}
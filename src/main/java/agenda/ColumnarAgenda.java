@@ -0,0 +1,508 @@
+package agenda;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Description : an agenda that stores its events in columns of primitive values
+ * instead of {@link Event} objects, for agendas holding tens of millions of
+ * events.
+ * <p>
+ * Each event takes about 30 bytes plus 8 bytes per exception : its start (epoch
+ * seconds), its duration (seconds), its frequency, its last day (epoch day), the
+ * identifier of its title in a table of distinct titles and the offset of its
+ * exceptions in a shared pool. Queries scan these columns and only build
+ * {@link Event} objects for their results : a new object per result and per
+ * query, equal field by field to the event that was added.
+ * <p>
+ * Times are kept to the second : the nanoseconds of starts and durations are
+ * dropped.
+ */
+public class ColumnarAgenda {
+
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    private static final ChronoUnit[] UNITS = ChronoUnit.values();
+
+    /**
+     * Frequency code of a non-repeating event, other codes are the ordinal of the
+     * ChronoUnit plus one
+     */
+    static final byte NO_REPETITION = 0;
+
+    /**
+     * Set on the frequency code of a repetition whose termination was given as a
+     * number of occurrences, which its termination date may not give back
+     */
+    static final byte TERMINATION_BY_COUNT = (byte) 0x80;
+
+    private static final byte UNTERMINATED = 0x40;
+
+    private static final byte FREQUENCY_MASK = 0x3F;
+
+    /**
+     * Default number of events below which parallel queries stay sequential
+     */
+    static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
+    private int size;
+    private long[] startSeconds = new long[16];
+    private long[] durationSeconds = new long[16];
+    private byte[] frequencies = new byte[16];
+    private long[] lastDays = new long[16];
+    private int[] titleIds = new int[16];
+
+    /**
+     * The exceptions of the event i are exceptionPool[exceptionOffsets[i]..exceptionOffsets[i + 1][
+     */
+    private int[] exceptionOffsets = new int[17];
+    private long[] exceptionPool = new long[16];
+
+    /**
+     * Distinct titles, the identifier of a title is its index (-1 for a null title)
+     */
+    private final List<String> titles = new ArrayList<>();
+    private final Map<String, Integer> titleIndex = new HashMap<>();
+
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * Adds an event to this agenda. The event must be fully defined (repetition,
+     * exceptions, termination) before being added : it is copied into the columns.
+     *
+     * @param e the event to add
+     */
+    public void addEvent(Event e) {
+        if (size == startSeconds.length) {
+            grow();
+        }
+        int i = size;
+        startSeconds[i] = e.getStart().toEpochSecond(ZoneOffset.UTC);
+        durationSeconds[i] = e.getDuration().getSeconds();
+        titleIds[i] = e.getTitle() == null ? -1
+                : titleIndex.computeIfAbsent(e.getTitle(), t -> {
+                    titles.add(t);
+                    return titles.size() - 1;
+                });
+        frequencies[i] = code(e);
+        lastDays[i] = lastDay(e);
+        int offset = exceptionOffsets[i];
+        Repetition r = e.getRepetition();
+        if (r != null) {
+            int count = r.getExceptionCount();
+            if (offset + count > exceptionPool.length) {
+                exceptionPool = Arrays.copyOf(exceptionPool, Math.max(offset + count, exceptionPool.length * 2));
+            }
+            System.arraycopy(r.exceptionDays(), 0, exceptionPool, offset, count);
+            offset += count;
+        }
+        exceptionOffsets[i + 1] = offset;
+        size++;
+    }
+
+    /**
+     * @return the number of events in this agenda
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Computes the events that occur on a given day
+     *
+     * @param day the day to test
+     * @return a list of events that occur on that day, in the order they were added
+     */
+    public List<Event> eventsInDay(LocalDate day) {
+        return eventsInDay(day, null);
+    }
+
+    /**
+     * Computes the events that occur on a given day, scanning chunks of the
+     * columns in parallel once this agenda holds at least
+     * {@link #setParallelThreshold(int) a threshold} of events. The agenda must
+     * not be modified during the query.
+     *
+     * @param day the day to test
+     * @param pool the pool scanning the chunks, null for a sequential scan
+     * @return a list of events that occur on that day, in the order they were added
+     */
+    public List<Event> eventsInDay(LocalDate day, ForkJoinPool pool) {
+        long epochDay = day.toEpochDay();
+        return ChunkedScan.scan(size, parallelThreshold, pool, (from, to, l) -> {
+            for (int i = from; i < to; i++) {
+                if (isInDay(i, epochDay)) {
+                    l.add(event(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * Computes the events that occur on each of several days, in a single scan of
+     * the columns : each event is tested against the sorted requested days it may
+     * reach
+     *
+     * @param days the days to test, in any order
+     * @return for each distinct day, in chronological order, the list of events
+     * that occur on that day, in the order they were added
+     */
+    public Map<LocalDate, List<Event>> eventsInDays(Collection<LocalDate> days) {
+        long[] sorted = days.stream().mapToLong(LocalDate::toEpochDay).sorted().distinct().toArray();
+        List<List<Event>> found = new ArrayList<>(sorted.length);
+        for (int j = 0; j < sorted.length; j++) {
+            found.add(new ArrayList<>());
+        }
+        if (sorted.length > 0) {
+            long first = sorted[0];
+            long last = sorted[sorted.length - 1];
+            for (int i = 0; i < size; i++) {
+                long startDay = Math.floorDiv(startSeconds[i], SECONDS_PER_DAY);
+                long lastReached = lastDays[i];
+                if (frequencies[i] != NO_REPETITION && lastReached != Long.MAX_VALUE) {
+                    lastReached += Math.floorDiv(startSeconds[i] + durationSeconds[i], SECONDS_PER_DAY) - startDay;
+                }
+                if (startDay > last || lastReached < first) {
+                    continue;
+                }
+                Event e = null;
+                int j = Arrays.binarySearch(sorted, startDay);
+                for (j = j < 0 ? -j - 1 : j; j < sorted.length && sorted[j] <= lastReached; j++) {
+                    if (isInDay(i, sorted[j])) {
+                        // One object per event, shared by the days it occurs on
+                        if (e == null) {
+                            e = event(i);
+                        }
+                        found.get(j).add(e);
+                    }
+                }
+            }
+        }
+        Map<LocalDate, List<Event>> result = new LinkedHashMap<>();
+        for (int j = 0; j < sorted.length; j++) {
+            result.put(LocalDate.ofEpochDay(sorted[j]), found.get(j));
+        }
+        return result;
+    }
+
+    /**
+     * Trouver les événements de l'agenda en fonction de leur titre
+     * @param title le titre à rechercher
+     * @return les événements qui ont le même titre
+     */
+    public List<Event> findByTitle(String title) {
+        return findByTitle(title, null);
+    }
+
+    /**
+     * Trouver les événements de l'agenda en fonction de leur titre, en parcourant
+     * l'agenda par morceaux en parallèle au-delà du seuil
+     * @param title le titre à rechercher
+     * @param pool le pool qui parcourt les morceaux, null pour un parcours séquentiel
+     * @return les événements qui ont le même titre, dans l'ordre d'ajout
+     * @see #setParallelThreshold(int)
+     */
+    public List<Event> findByTitle(String title, ForkJoinPool pool) {
+        Integer id = title == null ? Integer.valueOf(-1) : titleIndex.get(title);
+        if (id == null) {
+            return new ArrayList<>();
+        }
+        int wanted = id;
+        return ChunkedScan.scan(size, parallelThreshold, pool, (from, to, l) -> {
+            for (int i = from; i < to; i++) {
+                if (titleIds[i] == wanted) {
+                    l.add(event(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets the number of events below which the queries given a pool stay
+     * sequential : splitting a small scan costs more than it saves
+     *
+     * @param threshold a number of events, {@value #DEFAULT_PARALLEL_THRESHOLD} by default
+     */
+    public void setParallelThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Negative threshold : " + threshold);
+        }
+        this.parallelThreshold = threshold;
+    }
+
+    /**
+     * Déterminer s’il y a de la place dans l'agenda pour un événement (aucun autre
+     * événement au même moment), en tenant compte des répétitions
+     * @param e L'événement à tester
+     * @return vrai s’il y a de la place dans l'agenda pour cet événement
+     */
+    public boolean isFreeFor(Event e) {
+        if (!e.hasRepetition()) {
+            return isFreeFor(e.getStart(), e.getDuration());
+        }
+        long firstDay = e.startEpochDay();
+        long lastDay = e.getRepetition().lastEpochDay();
+        long lastReached = lastDay == Long.MAX_VALUE ? lastDay : lastDay + e.spanInDays() + 1;
+        for (int i = 0; i < size; i++) {
+            // Only the events active while e repeats can overlap it
+            long start = startSeconds[i];
+            if (!mayReach(start, durationSeconds[i], lastDays[i], firstDay, lastReached)) {
+                continue;
+            }
+            if (overlaps(e, start, durationSeconds[i], frequencies[i], lastDays[i],
+                    exceptionPool, exceptionOffsets[i], exceptionOffsets[i + 1])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Déterminer s’il y a de la place dans l'agenda sur un créneau (aucun autre
+     * événement au même moment, y compris les occurrences des événements répétitifs),
+     * à la seconde près
+     * @param start le début du créneau
+     * @param duration la durée du créneau
+     * @return vrai s’il y a de la place dans l'agenda sur ce créneau
+     */
+    public boolean isFreeFor(LocalDateTime start, Duration duration) {
+        long from = start.toEpochSecond(ZoneOffset.UTC);
+        long to = from + duration.getSeconds();
+        for (int i = 0; i < size; i++) {
+            if (overlaps(i, from, to)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the columns of this agenda in the format read by {@link MappedAgenda}
+     *
+     * @param channel the channel to write to, from its current position
+     * @throws IOException if the channel cannot be written
+     */
+    void write(FileChannel channel) throws IOException {
+        byte[][] encodedTitles = new byte[titles.size()][];
+        int titleBytes = 0;
+        for (int t = 0; t < encodedTitles.length; t++) {
+            encodedTitles[t] = titles.get(t).getBytes(StandardCharsets.UTF_8);
+            titleBytes += encodedTitles[t].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(MappedAgenda.BYTE_ORDER);
+        buffer.putInt(MappedAgenda.MAGIC).putInt(MappedAgenda.VERSION)
+                .putInt(size).putInt(exceptionOffsets[size]).putInt(encodedTitles.length).putInt(titleBytes)
+                .putLong(0);
+        for (long[] column : new long[][] { startSeconds, durationSeconds, lastDays }) {
+            for (int i = 0; i < size; i++) {
+                flushIfFull(channel, buffer, Long.BYTES).putLong(column[i]);
+            }
+        }
+        for (int x = 0; x < exceptionOffsets[size]; x++) {
+            flushIfFull(channel, buffer, Long.BYTES).putLong(exceptionPool[x]);
+        }
+        for (int i = 0; i < size; i++) {
+            flushIfFull(channel, buffer, Integer.BYTES).putInt(titleIds[i]);
+        }
+        for (int i = 0; i <= size; i++) {
+            flushIfFull(channel, buffer, Integer.BYTES).putInt(exceptionOffsets[i]);
+        }
+        int titleOffset = 0;
+        for (int t = 0; t <= encodedTitles.length; t++) {
+            flushIfFull(channel, buffer, Integer.BYTES).putInt(titleOffset);
+            titleOffset += t < encodedTitles.length ? encodedTitles[t].length : 0;
+        }
+        for (int i = 0; i < size; i++) {
+            flushIfFull(channel, buffer, 1).put(frequencies[i]);
+        }
+        for (byte[] title : encodedTitles) {
+            for (byte b : title) {
+                flushIfFull(channel, buffer, 1).put(b);
+            }
+        }
+        flushIfFull(channel, buffer, buffer.capacity());
+    }
+
+    private static ByteBuffer flushIfFull(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        if (buffer.remaining() < needed) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    private boolean isInDay(int i, long epochDay) {
+        return isInDay(startSeconds[i], durationSeconds[i], frequencies[i], lastDays[i],
+                exceptionPool, exceptionOffsets[i], exceptionOffsets[i + 1], epochDay);
+    }
+
+    private boolean overlaps(int i, long from, long to) {
+        return overlaps(startSeconds[i], durationSeconds[i], frequencies[i], lastDays[i],
+                exceptionPool, exceptionOffsets[i], exceptionOffsets[i + 1], from, to);
+    }
+
+    /**
+     * Builds the event stored at a given position
+     */
+    private Event event(int i) {
+        return event(titleIds[i] < 0 ? null : titles.get(titleIds[i]), startSeconds[i], durationSeconds[i],
+                frequencies[i], lastDays[i], exceptionPool, exceptionOffsets[i], exceptionOffsets[i + 1]);
+    }
+
+    /**
+     * Computes the frequency code of an event : its repetition and how its
+     * termination was given
+     */
+    static byte code(Event e) {
+        Repetition r = e.getRepetition();
+        if (r == null) {
+            return NO_REPETITION;
+        }
+        byte code = (byte) (r.getFrequency().ordinal() + 1);
+        Termination termination = r.getTermination();
+        if (termination == null) {
+            code |= UNTERMINATED;
+        } else if (termination.byCount()) {
+            code |= TERMINATION_BY_COUNT;
+        }
+        return code;
+    }
+
+    /**
+     * Computes the last day of an event : the day its occurrence ends for a
+     * simple event, the last day an occurrence may start for a repeating one
+     */
+    static long lastDay(Event e) {
+        Repetition r = e.getRepetition();
+        return r == null ? e.startEpochDay() + e.spanInDays() : r.lastEpochDay();
+    }
+
+    /**
+     * Tests if the occurrences of a repeating event, starting in epoch seconds,
+     * may reach a range of days
+     */
+    static boolean mayReach(long start, long duration, long lastDay, long firstDay, long lastReached) {
+        long startDay = Math.floorDiv(start, SECONDS_PER_DAY);
+        return startDay <= lastReached && (lastDay == Long.MAX_VALUE
+                || lastDay + Math.floorDiv(start + duration, SECONDS_PER_DAY) - startDay >= firstDay - 1);
+    }
+
+    /**
+     * Tests if an event, given by its columns, occurs on a given day
+     *
+     * @see Event#isInDay(long)
+     */
+    static boolean isInDay(long start, long duration, byte code, long lastDay,
+                           long[] exceptions, int exceptionsFrom, int exceptionsTo, long epochDay) {
+        long startDay = Math.floorDiv(start, SECONDS_PER_DAY);
+        if (startDay > epochDay) {
+            return false;
+        }
+        long endDay = Math.floorDiv(start + duration, SECONDS_PER_DAY);
+        long span = Math.max(0, endDay - startDay);
+        if (code == NO_REPETITION) {
+            return epochDay <= endDay;
+        }
+        if (lastDay != Long.MAX_VALUE && lastDay + span < epochDay) {
+            return false;
+        }
+        return EpochDays.repeatsOn(frequency(code), startDay, span, lastDay,
+                exceptions, exceptionsFrom, exceptionsTo, epochDay);
+    }
+
+    /**
+     * Tests if an occurrence of an event, given by its columns, overlaps [from, to[
+     *
+     * @see Conflicts#overlaps(Event, long, long)
+     */
+    static boolean overlaps(long start, long duration, byte code, long lastDay,
+                            long[] exceptions, int exceptionsFrom, int exceptionsTo, long from, long to) {
+        if (code == NO_REPETITION) {
+            return from < start + duration && start < to;
+        }
+        long startDay = Math.floorDiv(start, SECONDS_PER_DAY);
+        return Conflicts.overlaps(frequency(code), startDay, lastDay, start - startDay * SECONDS_PER_DAY, duration,
+                exceptions, exceptionsFrom, exceptionsTo, from, to);
+    }
+
+    /**
+     * Tests if an occurrence of an event overlaps an occurrence of another one,
+     * given by its columns
+     *
+     * @see Conflicts#overlaps(Event, Event)
+     */
+    static boolean overlaps(Event e, long start, long duration, byte code, long lastDay,
+                            long[] exceptions, int exceptionsFrom, int exceptionsTo) {
+        if (code == NO_REPETITION) {
+            return Conflicts.overlaps(e, start, start + duration);
+        }
+        long startDay = Math.floorDiv(start, SECONDS_PER_DAY);
+        return Conflicts.overlaps(e, frequency(code), startDay, lastDay, start - startDay * SECONDS_PER_DAY, duration,
+                exceptions, exceptionsFrom, exceptionsTo);
+    }
+
+    /**
+     * Builds an event from its columns
+     */
+    static Event event(String title, long startSecond, long duration, byte code, long lastDay,
+                       long[] exceptions, int exceptionsFrom, int exceptionsTo) {
+        LocalDateTime start = LocalDateTime.ofEpochSecond(startSecond, 0, ZoneOffset.UTC);
+        Event e = new Event(title, start, Duration.ofSeconds(duration));
+        if (code == NO_REPETITION) {
+            return e;
+        }
+        ChronoUnit frequency = frequency(code);
+        e.setRepetition(frequency);
+        for (int x = exceptionsFrom; x < exceptionsTo; x++) {
+            e.addException(LocalDate.ofEpochDay(exceptions[x]));
+        }
+        if ((code & UNTERMINATED) != 0) {
+            return e;
+        }
+        LocalDate last = LocalDate.ofEpochDay(lastDay);
+        if ((code & TERMINATION_BY_COUNT) == 0) {
+            e.setTermination(last);
+        } else {
+            // The last occurrence is start + (count - 1) * frequency
+            LocalDate startDate = start.toLocalDate();
+            long k = frequency.between(startDate, last);
+            while (startDate.plus(k, frequency).isBefore(last)) {
+                k++;
+            }
+            e.setTermination(k + 1);
+        }
+        return e;
+    }
+
+    private static ChronoUnit frequency(byte code) {
+        return UNITS[(code & FREQUENCY_MASK) - 1];
+    }
+
+    private void grow() {
+        int capacity = size * 2;
+        startSeconds = Arrays.copyOf(startSeconds, capacity);
+        durationSeconds = Arrays.copyOf(durationSeconds, capacity);
+        frequencies = Arrays.copyOf(frequencies, capacity);
+        lastDays = Arrays.copyOf(lastDays, capacity);
+        titleIds = Arrays.copyOf(titleIds, capacity);
+        exceptionOffsets = Arrays.copyOf(exceptionOffsets, capacity + 1);
+    }
+}
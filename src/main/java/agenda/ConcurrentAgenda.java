@@ -0,0 +1,352 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Description : an agenda that can be shared between threads.
+ * <p>
+ * Events are spread over stripes, one per month of their start. Each stripe
+ * publishes an immutable snapshot that is replaced, copy on write, when an event
+ * is added to this stripe : queries never lock, and adding events that start in
+ * different months never contend. A snapshot is made of two {@link Agenda}s :
+ * the events up to the last rebuild, shared with the previous snapshots, and the
+ * few events added since, copied on each addition. The first one is rebuilt once
+ * the second one outgrows the square root of the stripe.
+ * <p>
+ * The events cannot change while they are in this agenda, since the snapshots
+ * shared with the readers would not follow : their setters throw an
+ * {@link IllegalStateException}. An event is changed by removing it, changing
+ * it and adding it again.
+ * <p>
+ * Results are ordered by month of start, then in the order the events were added.
+ * <p>
+ * {@link #addIfFree(Event)} locks the days covered by the event only (by stripes
+ * of days), so that bookings on different days proceed in parallel.
+ */
+public class ConcurrentAgenda {
+
+    /**
+     * Number of locks guarding the check and insertion of {@link #addIfFree(Event)}
+     */
+    private static final int DAY_LOCKS = 64;
+
+    private final ConcurrentNavigableMap<Long, Stripe> stripes = new ConcurrentSkipListMap<>();
+
+    /**
+     * Lock of the days d such that d % DAY_LOCKS == i
+     */
+    private final ReentrantLock[] dayLocks = new ReentrantLock[DAY_LOCKS];
+
+    /**
+     * Rejects the changes of the events of this agenda
+     */
+    private final Event.ChangeListener freezer = new Freezer();
+
+    public ConcurrentAgenda() {
+        for (int i = 0; i < DAY_LOCKS; i++) {
+            dayLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Adds an event to this agenda. The event must be fully defined (repetition,
+     * exceptions, termination) before being added : it cannot change until it is
+     * removed. An event already in this agenda is not added again.
+     *
+     * @param e the event to add
+     * @throws IllegalArgumentException if the event belongs to another agenda
+     */
+    public void addEvent(Event e) {
+        // Added and removed atomically, with its listener
+        synchronized (e) {
+            if (freeze(e)) {
+                stripes.computeIfAbsent(month(e.getStart().toLocalDate()), m -> new Stripe()).add(e);
+            }
+        }
+    }
+
+    /**
+     * Removes an event from this agenda : only the stripe of its month is copied.
+     * The event can then change again.
+     *
+     * @param e the event to remove
+     * @return true if the event was in this agenda
+     */
+    public boolean removeEvent(Event e) {
+        synchronized (e) {
+            if (e.getChangeListener() != freezer) {
+                return false;
+            }
+            // Its start did not change since it was added
+            stripes.get(month(e.getStart().toLocalDate())).remove(e);
+            e.setChangeListener(null);
+            return true;
+        }
+    }
+
+    /**
+     * Adds an event to this agenda if there is room for it, atomically : no
+     * overlapping event can be added by another thread between the check and the
+     * insertion.
+     *
+     * @param e the event to add
+     * @return true if the event was added, false if it overlaps another event
+     */
+    public boolean addIfFree(Event e) {
+        return addAllIfFree(List.of(e));
+    }
+
+    /**
+     * Adds events to this agenda if there is room for all of them, atomically
+     *
+     * @param candidates the events to add
+     * @return true if the events were added, false if none was added
+     * @see Agenda#addAllIfFree(Collection)
+     */
+    public boolean addAllIfFree(Collection<Event> candidates) {
+        for (Event e : candidates) {
+            if (e.getChangeListener() != null && e.getChangeListener() != freezer) {
+                throw new IllegalArgumentException("Event of another agenda : " + e);
+            }
+        }
+        BitSet locks = new BitSet(DAY_LOCKS);
+        for (Event e : candidates) {
+            lockedDays(e, locks);
+        }
+        // Always lock in the same order to avoid deadlocks
+        for (int i = locks.nextSetBit(0); i >= 0; i = locks.nextSetBit(i + 1)) {
+            dayLocks[i].lock();
+        }
+        try {
+            Agenda batch = new Agenda(false);
+            for (Event e : candidates) {
+                if (e.getChangeListener() == freezer) {
+                    continue;
+                }
+                if (!isFreeFor(e) || !batch.isFreeFor(e)) {
+                    return false;
+                }
+                batch.addEvent(e);
+            }
+            candidates.forEach(this::addEvent);
+            return true;
+        } finally {
+            for (int i = locks.nextSetBit(0); i >= 0; i = locks.nextSetBit(i + 1)) {
+                dayLocks[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * Computes the events that occur on a given day
+     *
+     * @param day the day to test
+     * @return a list of events that occur on that day
+     */
+    public List<Event> eventsInDay(LocalDate day) {
+        // Events starting after this month cannot occur on that day
+        List<Event> l = new ArrayList<>();
+        for (Stripe stripe : stripes.headMap(month(day), true).values()) {
+            l.addAll(stripe.snapshot.eventsInDay(day));
+        }
+        return l;
+    }
+
+    /**
+     * Trouver les événements de l'agenda en fonction de leur titre
+     * @param title le titre à rechercher
+     * @return les événements qui ont le même titre
+     */
+    public List<Event> findByTitle(String title) {
+        List<Event> l = new ArrayList<>();
+        for (Stripe stripe : stripes.values()) {
+            l.addAll(stripe.snapshot.findByTitle(title));
+        }
+        return l;
+    }
+
+    /**
+     * Déterminer s’il y a de la place dans l'agenda pour un événement (aucun autre
+     * événement au même moment), en tenant compte des répétitions
+     * @param e L'événement à tester
+     * @return vrai s’il y a de la place dans l'agenda pour cet événement
+     */
+    public boolean isFreeFor(Event e) {
+        for (Stripe stripe : stripes.values()) {
+            if (!stripe.snapshot.isFreeFor(e)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Déterminer s’il y a de la place dans l'agenda sur un créneau
+     * @param start le début du créneau
+     * @param duration la durée du créneau
+     * @return vrai s’il y a de la place dans l'agenda sur ce créneau
+     * @see Agenda#isFreeFor(LocalDateTime, Duration)
+     */
+    public boolean isFreeFor(LocalDateTime start, Duration duration) {
+        long last = month(start.plus(duration).toLocalDate());
+        for (Stripe stripe : stripes.headMap(last, true).values()) {
+            if (!stripe.snapshot.isFreeFor(start, duration)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks the locks of the days an event can overlap : two overlapping events
+     * always have a day in common. A repeating event can overlap any day.
+     */
+    private static void lockedDays(Event e, BitSet locks) {
+        long first = e.getStart().toLocalDate().toEpochDay();
+        long last = e.getStart().plus(e.getDuration()).toLocalDate().toEpochDay();
+        if (e.hasRepetition() || last - first >= DAY_LOCKS) {
+            locks.set(0, DAY_LOCKS);
+            return;
+        }
+        for (long day = first; day <= last; day++) {
+            locks.set(Math.floorMod(day, DAY_LOCKS));
+        }
+    }
+
+    /**
+     * Makes an event reject its changes
+     *
+     * @return false if the event is already in this agenda
+     */
+    private boolean freeze(Event e) {
+        Event.ChangeListener listener = e.getChangeListener();
+        if (listener == freezer) {
+            return false;
+        }
+        // Another agenda would follow its changes, this one could not
+        if (listener != null) {
+            throw new IllegalArgumentException("Event of another agenda : " + e);
+        }
+        e.setChangeListener(freezer);
+        return true;
+    }
+
+    private static long month(LocalDate day) {
+        return day.getYear() * 12L + day.getMonthValue() - 1;
+    }
+
+    /**
+     * Rejects any change of an event of this agenda
+     */
+    private static final class Freezer implements Event.ChangeListener {
+
+        @Override
+        public void beforeChange(Event e) {
+            throw new IllegalStateException("An event of a ConcurrentAgenda cannot change, remove it first : " + e);
+        }
+
+        @Override
+        public void afterChange(Event e) {
+            // Never changed
+        }
+    }
+
+    /**
+     * The events starting in one month
+     */
+    private static final class Stripe {
+
+        /**
+         * Number of events added since the last rebuild that are always copied
+         * rather than rebuilding
+         */
+        private static final int MIN_RECENT = 32;
+
+        /**
+         * The events of this stripe, guarded by the stripe
+         */
+        private final List<Event> events = new ArrayList<>();
+
+        /**
+         * Number of events of this stripe in the base of the snapshot, guarded by the stripe
+         */
+        private int baseSize;
+
+        /**
+         * The events of this stripe, never modified once published
+         */
+        private volatile Snapshot snapshot = new Snapshot(new Agenda(false), new Agenda(false));
+
+        synchronized void add(Event e) {
+            events.add(e);
+            int recent = events.size() - baseSize;
+            if (recent > Math.max(MIN_RECENT, Math.sqrt(events.size()))) {
+                rebuild();
+            } else {
+                // The base is shared, only the recent events are copied
+                snapshot = new Snapshot(snapshot.base, agenda(events.subList(baseSize, events.size())));
+            }
+        }
+
+        synchronized void remove(Event e) {
+            for (int i = 0; i < events.size(); i++) {
+                if (events.get(i) == e) {
+                    events.remove(i);
+                    rebuild();
+                    return;
+                }
+            }
+        }
+
+        private void rebuild() {
+            baseSize = events.size();
+            snapshot = new Snapshot(agenda(events), new Agenda(false));
+        }
+
+        private static Agenda agenda(List<Event> events) {
+            Agenda agenda = new Agenda(false);
+            agenda.addAll(events);
+            return agenda;
+        }
+    }
+
+    /**
+     * The events of a stripe : those of the base, then those added since it was built
+     */
+    private record Snapshot(Agenda base, Agenda recent) {
+
+        List<Event> eventsInDay(LocalDate day) {
+            return concat(base.eventsInDay(day), recent.eventsInDay(day));
+        }
+
+        List<Event> findByTitle(String title) {
+            return concat(base.findByTitle(title), recent.findByTitle(title));
+        }
+
+        boolean isFreeFor(Event e) {
+            return base.isFreeFor(e) && recent.isFreeFor(e);
+        }
+
+        boolean isFreeFor(LocalDateTime start, Duration duration) {
+            return base.isFreeFor(start, duration) && recent.isFreeFor(start, duration);
+        }
+
+        private static List<Event> concat(List<Event> first, List<Event> second) {
+            if (second.isEmpty()) {
+                return first;
+            }
+            List<Event> l = new ArrayList<>(first);
+            l.addAll(second);
+            return l;
+        }
+    }
+}
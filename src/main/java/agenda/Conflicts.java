@@ -0,0 +1,294 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+
+/**
+ * Description : detects whether the occurrences of events overlap, using the
+ * arithmetic of their repetitions instead of enumerating every occurrence.
+ * <p>
+ * Times are epoch seconds, days are epoch days. An occurrence of an event starting
+ * on day x takes [x * 86400 + time of day, + duration[.
+ */
+final class Conflicts {
+
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    /**
+     * The Gregorian calendar repeats itself every 400 years (4800 months) : two
+     * repetitions that have no common day during that long will never have one
+     */
+    private static final int CALENDAR_CYCLE = 4_800;
+
+    private Conflicts() {
+    }
+
+    /**
+     * Tests if an occurrence of an event overlaps [start, end[
+     *
+     * @param e the event to test
+     * @param start the start of the interval, in epoch seconds
+     * @param end the end of the interval (exclusive), in epoch seconds
+     * @return true if an occurrence of e overlaps the interval
+     */
+    static boolean overlaps(Event e, long start, long end) {
+        long duration = e.getDuration().getSeconds();
+        if (!e.hasRepetition()) {
+            long first = startSecond(e);
+            return start < first + duration && first < end;
+        }
+        Repetition r = e.getRepetition();
+        return overlaps(r.getFrequency(), firstDay(e), lastDay(e), timeOfDay(e), duration,
+                r.exceptionDays(), 0, r.getExceptionCount(), start, end);
+    }
+
+    /**
+     * Tests if an occurrence of a repetition overlaps [start, end[, the repetition
+     * being given by its primitive fields
+     *
+     * @param frequency the frequency of the repetition
+     * @param firstDay the day of the first occurrence
+     * @param lastDay the last day an occurrence may start (Long.MAX_VALUE if none)
+     * @param timeOfDay the second of day where each occurrence starts
+     * @param duration the duration of each occurrence, in seconds
+     * @param exceptions sorted exceptions, in exceptions[exceptionsFrom..exceptionsTo[
+     * @param exceptionsFrom the index of the first exception
+     * @param exceptionsTo the index after the last exception
+     * @param start the start of the interval, in epoch seconds
+     * @param end the end of the interval (exclusive), in epoch seconds
+     * @return true if an occurrence overlaps the interval
+     */
+    static boolean overlaps(ChronoUnit frequency, long firstDay, long lastDay, long timeOfDay, long duration,
+                            long[] exceptions, int exceptionsFrom, int exceptionsTo, long start, long end) {
+        // Days on which an occurrence must start to overlap the interval
+        long lo = Math.max(firstDay, Math.floorDiv(start - duration - timeOfDay, SECONDS_PER_DAY) + 1);
+        long hi = Math.min(lastDay, -Math.floorDiv(timeOfDay - end, SECONDS_PER_DAY) - 1);
+        // Each day visited is either free of exception (conflict) or an exception
+        for (long day = nextStartDay(frequency, firstDay, lo); day <= hi;
+             day = nextStartDay(frequency, firstDay, day + 1)) {
+            if (Arrays.binarySearch(exceptions, exceptionsFrom, exceptionsTo, day) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests if an occurrence of an event overlaps an occurrence of another one
+     *
+     * @param a an event
+     * @param b another event
+     * @return true if an occurrence of a overlaps an occurrence of b
+     */
+    static boolean overlaps(Event a, Event b) {
+        if (!b.hasRepetition()) {
+            long start = startSecond(b);
+            return overlaps(a, start, start + b.getDuration().getSeconds());
+        }
+        Repetition r = b.getRepetition();
+        return overlaps(a, r.getFrequency(), firstDay(b), lastDay(b), timeOfDay(b),
+                b.getDuration().getSeconds(), r.exceptionDays(), 0, r.getExceptionCount());
+    }
+
+    /**
+     * Tests if an occurrence of an event overlaps an occurrence of a repetition
+     * given by its primitive fields, such as a row of a columnar agenda
+     *
+     * @param e the event to test
+     * @param frequency the frequency of the repetition
+     * @param firstDay the day of the first occurrence
+     * @param lastDay the last day an occurrence may start (Long.MAX_VALUE if none)
+     * @param timeOfDay the second of day where each occurrence starts
+     * @param duration the duration of each occurrence, in seconds
+     * @param exceptions sorted exceptions, in exceptions[exceptionsFrom..exceptionsTo[
+     * @param exceptionsFrom the index of the first exception
+     * @param exceptionsTo the index after the last exception
+     * @return true if an occurrence of e overlaps an occurrence of the repetition
+     */
+    static boolean overlaps(Event e, ChronoUnit frequency, long firstDay, long lastDay, long timeOfDay,
+                            long duration, long[] exceptions, int exceptionsFrom, int exceptionsTo) {
+        Series b = new Series(frequency, firstDay, lastDay, timeOfDay, duration,
+                exceptions, exceptionsFrom, exceptionsTo);
+        if (!e.hasRepetition()) {
+            long start = startSecond(e);
+            return b.overlaps(start, start + e.getDuration().getSeconds());
+        }
+        Repetition r = e.getRepetition();
+        Series a = new Series(r.getFrequency(), firstDay(e), lastDay(e), timeOfDay(e),
+                e.getDuration().getSeconds(), r.exceptionDays(), 0, r.getExceptionCount());
+        // The occurrences starting on days x (for a) and x + shift (for b) overlap
+        // when -duration(b) < shift * 86400 + time(b) - time(a) < duration(a)
+        long delta = b.timeOfDay - a.timeOfDay;
+        long minShift = Math.floorDiv(-b.duration - delta, SECONDS_PER_DAY) + 1;
+        long maxShift = -Math.floorDiv(delta - a.duration, SECONDS_PER_DAY) - 1;
+        for (long shift = minShift; shift <= maxShift; shift++) {
+            boolean found = rank(a.frequency) >= rank(b.frequency)
+                    ? commonStartDay(a, b, shift)
+                    : commonStartDay(b, a, -shift);
+            if (found) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests if there is a day x, free of exception, where p starts an occurrence
+     * and q starts one on x + shift. The occurrences of p, the sparser of the two
+     * repetitions, are enumerated, unless their days of week or of month show
+     * that they never meet.
+     */
+    private static boolean commonStartDay(Series p, Series q, long shift) {
+        if (!mayMeet(p.frequency, p.firstDay, q.frequency, q.firstDay, shift)) {
+            return false;
+        }
+        long lo = Math.max(p.firstDay, q.firstDay - shift);
+        long hi = q.lastDay == Long.MAX_VALUE ? p.lastDay : Math.min(p.lastDay, q.lastDay - shift);
+        int misses = 0;
+        for (long x = p.nextStartDay(lo); x <= hi && misses < CALENDAR_CYCLE; x = p.nextStartDay(x + 1)) {
+            if (q.nextStartDay(x + shift) != x + shift) {
+                misses++;
+            } else if (!p.isException(x) && !q.isException(x + shift)) {
+                return true;
+            } else {
+                misses = 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests, in O(1), if a repetition p may start an occurrence on a day x and a
+     * repetition q on x + shift, regardless of their ranges and exceptions. False
+     * only if they never do : two weekly repetitions on other days of the week, or
+     * two monthly ones whose days of month never match. A monthly repetition
+     * starts on every day of the week within a few years, and a daily one on
+     * every day.
+     *
+     * @param freqP the frequency of p, the sparser
+     * @param firstP the day of the first occurrence of p
+     * @param freqQ the frequency of q
+     * @param firstQ the day of the first occurrence of q
+     * @param shift the number of days from the start of p to the start of q
+     */
+    static boolean mayMeet(ChronoUnit freqP, long firstP, ChronoUnit freqQ, long firstQ, long shift) {
+        if (freqP == ChronoUnit.WEEKS && freqQ == ChronoUnit.WEEKS) {
+            return Math.floorMod(firstP + shift - firstQ, 7) == 0;
+        }
+        if (freqP == ChronoUnit.MONTHS && freqQ == ChronoUnit.MONTHS) {
+            return monthDaysMayMeet(EpochDays.dayOfMonth(firstP), EpochDays.dayOfMonth(firstQ), shift);
+        }
+        return true;
+    }
+
+    /**
+     * Tests if the day shift days after a day of month dayP can be a day of
+     * month dayQ : x + shift falls in the month of x, or in the next or the
+     * previous one, of 28 to 31 days
+     */
+    private static boolean monthDaysMayMeet(int dayP, int dayQ, long shift) {
+        if (Math.abs(shift) >= 28) {
+            // Further months : left to the enumeration
+            return true;
+        }
+        long day = dayP + shift;
+        if (day == dayQ) {
+            return true;
+        }
+        for (int length = 28; length <= 31; length++) {
+            // In the next month, the month of x having this length, or in the previous one
+            if (length >= dayP && day - length == dayQ || day + length == dayQ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the first day, on or after a given day, where a repetition starting
+     * on a given day starts an occurrence, regardless of its exceptions and termination
+     */
+    static long nextStartDay(ChronoUnit freq, long first, long day) {
+        if (day <= first) {
+            return first;
+        }
+        switch (freq) {
+            case DAYS:
+                return day;
+            case WEEKS:
+                return first - Math.floorDiv(first - day, 7) * 7;
+            case MONTHS: {
+                int dayOfMonth = EpochDays.dayOfMonth(first);
+                LocalDate from = LocalDate.ofEpochDay(day);
+                LocalDate month = from.withDayOfMonth(1);
+                if (from.getDayOfMonth() > dayOfMonth) {
+                    month = month.plusMonths(1);
+                }
+                while (month.lengthOfMonth() < dayOfMonth) {
+                    month = month.plusMonths(1);
+                }
+                return month.withDayOfMonth(dayOfMonth).toEpochDay();
+            }
+            default: {
+                LocalDate startDate = LocalDate.ofEpochDay(first);
+                LocalDate from = LocalDate.ofEpochDay(day);
+                for (long k = freq.between(startDate, from); ; k++) {
+                    LocalDate candidate = startDate.plus(k, freq);
+                    if (!candidate.isBefore(from) && freq.between(startDate, candidate) == k) {
+                        return candidate.toEpochDay();
+                    }
+                }
+            }
+        }
+    }
+
+    // Repetitions with larger units have fewer occurrences to enumerate
+    private static int rank(ChronoUnit frequency) {
+        return switch (frequency) {
+            case DAYS -> 0;
+            case WEEKS -> 1;
+            case MONTHS -> 2;
+            default -> 3;
+        };
+    }
+
+    private static long firstDay(Event e) {
+        return e.startEpochDay();
+    }
+
+    private static long lastDay(Event e) {
+        return e.getRepetition().lastEpochDay();
+    }
+
+    private static long timeOfDay(Event e) {
+        return e.getStart().toLocalTime().toSecondOfDay();
+    }
+
+    private static long startSecond(Event e) {
+        return e.getStart().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * A repetition given by its primitive fields
+     *
+     * @see #overlaps(ChronoUnit, long, long, long, long, long[], int, int, long, long)
+     */
+    private record Series(ChronoUnit frequency, long firstDay, long lastDay, long timeOfDay, long duration,
+                          long[] exceptions, int exceptionsFrom, int exceptionsTo) {
+
+        boolean overlaps(long start, long end) {
+            return Conflicts.overlaps(frequency, firstDay, lastDay, timeOfDay, duration,
+                    exceptions, exceptionsFrom, exceptionsTo, start, end);
+        }
+
+        long nextStartDay(long day) {
+            return Conflicts.nextStartDay(frequency, firstDay, day);
+        }
+
+        boolean isException(long day) {
+            return Arrays.binarySearch(exceptions, exceptionsFrom, exceptionsTo, day) >= 0;
+        }
+    }
+}
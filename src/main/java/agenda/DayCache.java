@@ -0,0 +1,126 @@
+package agenda;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+/**
+ * Description : the results of {@link Agenda#eventsInDay(java.time.LocalDate)}
+ * for the days queried most recently, the least recently used day being evicted
+ * first when the cache is full.
+ * <p>
+ * A change to the agenda only drops the days whose result it changes : the days
+ * the added, removed or changed event occurs on.
+ */
+final class DayCache {
+
+    private final int capacity;
+
+    /**
+     * The results by epoch day, in access order
+     */
+    private final LinkedHashMap<Long, List<Event>> days;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * @param capacity the number of days kept, at least 1
+     */
+    DayCache(int capacity) {
+        this.capacity = capacity;
+        this.days = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, List<Event>> eldest) {
+                if (size() > DayCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return a copy of the result of a day, null if it is not cached
+     */
+    List<Event> get(long epochDay) {
+        List<Event> l = days.get(epochDay);
+        if (l == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new ArrayList<>(l);
+    }
+
+    /**
+     * Caches the result of a day, which is copied
+     */
+    void put(long epochDay, List<Event> events) {
+        days.put(epochDay, new ArrayList<>(events));
+    }
+
+    /**
+     * Drops the days an event occurs on
+     */
+    void invalidate(Event e) {
+        if (!e.hasRepetition() && e.spanInDays() < days.size()) {
+            for (long day = e.startEpochDay(); day <= e.startEpochDay() + e.spanInDays(); day++) {
+                if (days.remove(day) != null) {
+                    invalidations++;
+                }
+            }
+            return;
+        }
+        invalidateIf(e::isInDay);
+    }
+
+    /**
+     * @return the cached days an event occurs on
+     */
+    Set<Long> daysOf(Event e) {
+        Set<Long> found = new HashSet<>();
+        for (long day : days.keySet()) {
+            if (e.isInDay(day)) {
+                found.add(day);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Drops the days whose result a change of an event changed : the days it
+     * occurs on now or occurred on before, but not both
+     *
+     * @param e the changed event
+     * @param before the cached days it occurred on before the change
+     */
+    void invalidate(Event e, Set<Long> before) {
+        invalidateIf(day -> before.contains(day) != e.isInDay(day));
+    }
+
+    /**
+     * Drops every day
+     */
+    void clear() {
+        invalidations += days.size();
+        days.clear();
+    }
+
+    DayCacheStats stats() {
+        return new DayCacheStats(capacity, days.size(), hits, misses, evictions, invalidations);
+    }
+
+    private void invalidateIf(LongPredicate changed) {
+        int before = days.size();
+        days.keySet().removeIf(changed::test);
+        invalidations += before - days.size();
+    }
+}
@@ -0,0 +1,16 @@
+package agenda;
+
+/**
+ * Description : the counters of the day cache of an {@link Agenda}
+ *
+ * @param capacity the number of days the cache keeps, 0 if it is disabled
+ * @param size the number of days cached
+ * @param hits the number of queries answered from the cache
+ * @param misses the number of queries computed and then cached
+ * @param evictions the number of days dropped to make room for another day
+ * @param invalidations the number of days dropped because a change to the agenda
+ * changed their result
+ * @see Agenda#setDayCacheCapacity(int)
+ */
+public record DayCacheStats(int capacity, int size, long hits, long misses, long evictions, long invalidations) {
+}
@@ -0,0 +1,776 @@
+package agenda;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Description : an agenda whose mutations survive a crash.
+ * <p>
+ * Each mutation is appended to a log made of segments ({@code wal-<n>.log}),
+ * one record per mutation : its length, its CRC32C and its content. A mutation
+ * returns once its record is on disk ; threads that mutate at the same time
+ * share one fsync (group commit), and {@link #addEvents(List)} writes many
+ * events under a single fsync.
+ * <p>
+ * When enough segments are full, a background thread writes a snapshot of the
+ * agenda ({@code snapshot-<n>.bin}, in the format of {@link MappedAgenda}) that
+ * replaces the segments before n, which are deleted. Opening the directory
+ * loads the last snapshot then replays the segments that follow it ; a record
+ * torn by a crash ends the log. A background snapshot that fails keeps its
+ * segments, and the next mutation or {@link #close()} reports the failure.
+ * <p>
+ * Events are stored to the second, like {@link MappedAgenda}. An event is
+ * logged with its repetition, exceptions and termination ; once added, it is
+ * logged again after each of its changes (start, duration, repetition,
+ * exceptions, termination) : the setter making the change returns once it is
+ * on disk, or throws an {@link UncheckedIOException}. An event of this agenda
+ * cannot belong to another one.
+ */
+public class DurableAgenda implements Closeable {
+
+    private static final byte ADD = 1;
+
+    private static final byte EXCEPTION = 2;
+
+    private static final byte UPDATE = 3;
+
+    private static final int RECORD_HEADER = 2 * Integer.BYTES;
+
+    private static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+
+    private static final int DEFAULT_SEGMENTS_BEFORE_COMPACTION = 4;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final int segmentsBeforeCompaction;
+
+    /**
+     * Guards the agenda, the positions and the records waiting to be written
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Agenda agenda = new Agenda();
+    private final Map<Event, Integer> positions = new IdentityHashMap<>();
+    private ByteBuffer pending = newBuffer(1 << 16);
+    private int recordStart;
+    private long appended;
+
+    /**
+     * Logs the changes of the events of this agenda
+     */
+    private final Event.ChangeListener logger = new Logger();
+
+    /**
+     * True while the log is replayed : the changes replayed are already logged
+     */
+    private boolean replaying;
+
+    /**
+     * Guards the group commit : a single thread writes and syncs the log at a
+     * time, for every record appended when it starts
+     */
+    private final Object syncMonitor = new Object();
+    private boolean syncing;
+    private long durable;
+    private ByteBuffer spare = newBuffer(1 << 16);
+    private FileChannel segment;
+    private long segmentId;
+    private int fullSegments;
+
+    private final ExecutorService compaction = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "agenda-compaction");
+        t.setDaemon(true);
+        return t;
+    });
+    private boolean compacting;
+    private volatile boolean closed;
+
+    /**
+     * The failure of the last background compaction, reported by the next
+     * mutation or by {@link #close()}
+     */
+    private final AtomicReference<Exception> compactionFailure = new AtomicReference<>();
+
+    private DurableAgenda(Path directory, long segmentSize, int segmentsBeforeCompaction) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.segmentsBeforeCompaction = segmentsBeforeCompaction;
+    }
+
+    /**
+     * Opens the agenda stored in a directory, with segments of 64 MB compacted
+     * by 4
+     *
+     * @param directory the directory of the log and snapshots, created if needed
+     * @return the agenda, as it was when the last mutation returned
+     * @throws IOException if the directory cannot be read or written
+     */
+    public static DurableAgenda open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_SEGMENTS_BEFORE_COMPACTION);
+    }
+
+    /**
+     * Opens the agenda stored in a directory
+     *
+     * @param directory the directory of the log and snapshots, created if needed
+     * @param segmentSize the size after which a segment is full, in bytes
+     * @param segmentsBeforeCompaction the number of full segments that trigger a snapshot
+     * @return the agenda, as it was when the last mutation returned
+     * @throws IOException if the directory cannot be read or written
+     */
+    public static DurableAgenda open(Path directory, long segmentSize, int segmentsBeforeCompaction)
+            throws IOException {
+        Files.createDirectories(directory);
+        DurableAgenda durableAgenda = new DurableAgenda(directory, segmentSize, segmentsBeforeCompaction);
+        durableAgenda.recover();
+        return durableAgenda;
+    }
+
+    /**
+     * Adds an event to this agenda and logs it. An event already in this agenda
+     * is neither added nor logged again.
+     *
+     * @param e the event to add
+     * @throws IOException if the log cannot be written
+     * @throws IllegalArgumentException if the event belongs to another agenda
+     */
+    public void addEvent(Event e) throws IOException {
+        addEvents(List.of(e));
+    }
+
+    /**
+     * Adds events to this agenda and logs them with a single fsync
+     *
+     * @param events the events to add
+     * @throws IOException if the log cannot be written
+     * @throws IllegalArgumentException if an event belongs to another agenda
+     */
+    public void addEvents(List<Event> events) throws IOException {
+        long sequence;
+        lock.lock();
+        try {
+            for (Event e : events) {
+                // Its changes would update the other agenda and never be logged
+                if (!positions.containsKey(e) && e.getChangeListener() != null) {
+                    throw new IllegalArgumentException("Event of another agenda : " + e);
+                }
+            }
+            for (Event e : events) {
+                if (positions.containsKey(e)) {
+                    continue;
+                }
+                appendAdd(e);
+                apply(e);
+            }
+            sequence = appended;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(sequence);
+        reportCompactionFailure();
+    }
+
+    /**
+     * Adds an exception to an event of this agenda and logs it, like
+     * {@link Event#addException(LocalDate)} but with a checked exception
+     *
+     * @param e an event of this agenda
+     * @param date a day where the event must not occur
+     * @throws IOException if the log cannot be written
+     * @throws IllegalArgumentException if the event is not in this agenda or does not repeat
+     */
+    public void addException(Event e, LocalDate date) throws IOException {
+        lock.lock();
+        try {
+            if (!positions.containsKey(e) || !e.hasRepetition()) {
+                throw new IllegalArgumentException("Not a repeating event of this agenda : " + e);
+            }
+        } finally {
+            lock.unlock();
+        }
+        try {
+            e.addException(date);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * @return the events of this agenda, in the order they were added
+     */
+    public List<Event> getEvents() {
+        lock.lock();
+        try {
+            return new ArrayList<>(agenda.getEvents());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Computes the events that occur on a given day
+     *
+     * @param day the day to test
+     * @return a list of events that occur on that day
+     */
+    public List<Event> eventsInDay(LocalDate day) {
+        lock.lock();
+        try {
+            return agenda.eventsInDay(day);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Trouver les événements de l'agenda en fonction de leur titre
+     * @param title le titre à rechercher
+     * @return les événements qui ont le même titre
+     */
+    public List<Event> findByTitle(String title) {
+        lock.lock();
+        try {
+            return agenda.findByTitle(title);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Déterminer s’il y a de la place dans l'agenda pour un événement (aucun autre
+     * événement au même moment), en tenant compte des répétitions
+     * @param e L'événement à tester
+     * @return vrai s’il y a de la place dans l'agenda pour cet événement
+     */
+    public boolean isFreeFor(Event e) {
+        lock.lock();
+        try {
+            return agenda.isFreeFor(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes a snapshot of this agenda now and deletes the segments it replaces
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void compact() throws IOException {
+        List<ImmutableEvent> events;
+        long written = 0;
+        long firstKept;
+        // Seal the current segment : the snapshot holds every record before the next one
+        synchronized (syncMonitor) {
+            beginSync();
+        }
+        try {
+            lock.lock();
+            try {
+                // A copy : the events keep changing, under the lock, while the snapshot is written
+                events = agenda.getEvents().stream().map(ImmutableEvent::of).toList();
+                written = appended;
+                swapPending();
+            } finally {
+                lock.unlock();
+            }
+            writeSpare();
+            firstKept = roll();
+        } finally {
+            endSync(written);
+        }
+        // Exceptions logged meanwhile may already be in the snapshot : replaying them is harmless
+        Path snapshot = directory.resolve(snapshotName(firstKept));
+        Path temporary = directory.resolve(snapshotName(firstKept) + ".tmp");
+        MappedAgenda.write(events.stream().map(ImmutableEvent::toEvent).toList(), temporary);
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE);
+        // The segments are deleted only once the snapshot is durable under its name
+        syncDirectory();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                long id = fileId(file, "wal-", ".log");
+                long snapshotId = fileId(file, "snapshot-", ".bin");
+                if (id >= 0 && id < firstKept || snapshotId >= 0 && snapshotId < firstKept) {
+                    Files.delete(file);
+                }
+            }
+        }
+        synchronized (syncMonitor) {
+            fullSegments = 0;
+        }
+    }
+
+    /**
+     * Syncs the log and stops the background compaction
+     *
+     * @throws IOException if the log cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        awaitDurable(appended());
+        closed = true;
+        compaction.shutdown();
+        try {
+            compaction.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (syncMonitor) {
+            segment.close();
+        }
+        reportCompactionFailure();
+    }
+
+    private void apply(Event e) {
+        positions.put(e, agenda.getEvents().size());
+        // Set first, so that the agenda leaves it
+        e.setChangeListener(logger);
+        agenda.addEvent(e);
+    }
+
+    private void appendAdd(Event e) {
+        appendEvent(ADD, e, -1);
+    }
+
+    /**
+     * Appends a record holding a whole event
+     *
+     * @param type ADD, or UPDATE followed by the position of the event
+     */
+    private void appendEvent(byte type, Event e, int position) {
+        byte[] title = e.getTitle() == null ? null : e.getTitle().getBytes(StandardCharsets.UTF_8);
+        Repetition r = e.getRepetition();
+        int exceptions = r == null ? 0 : r.getExceptionCount();
+        ByteBuffer record = reserve(1 + (type == UPDATE ? Integer.BYTES : 0) + Integer.BYTES
+                + (title == null ? 0 : title.length) + 3 * Long.BYTES + 1 + Integer.BYTES + exceptions * Long.BYTES);
+        record.put(type);
+        if (type == UPDATE) {
+            record.putInt(position);
+        }
+        record.putInt(title == null ? -1 : title.length);
+        if (title != null) {
+            record.put(title);
+        }
+        record.putLong(e.getStart().toEpochSecond(ZoneOffset.UTC))
+                .putLong(e.getDuration().getSeconds())
+                .put(ColumnarAgenda.code(e))
+                .putLong(ColumnarAgenda.lastDay(e))
+                .putInt(exceptions);
+        for (int x = 0; x < exceptions; x++) {
+            record.putLong(r.exceptionDays()[x]);
+        }
+        seal(record);
+    }
+
+    /**
+     * Holds the lock during each change of an event of this agenda, updates the
+     * indexes of the agenda and logs the event as changed
+     */
+    private final class Logger implements Event.ChangeListener {
+
+        @Override
+        public void beforeChange(Event e) {
+            lock.lock();
+            try {
+                agenda.tracker().beforeChange(e);
+            } catch (RuntimeException ex) {
+                lock.unlock();
+                throw ex;
+            }
+        }
+
+        @Override
+        public void afterChange(Event e) {
+            long sequence;
+            try {
+                agenda.tracker().afterChange(e);
+                if (replaying) {
+                    return;
+                }
+                appendEvent(UPDATE, e, positions.get(e));
+                sequence = appended;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                awaitDurable(sequence);
+                reportCompactionFailure();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    /**
+     * Reserves room for a record in the pending buffer
+     *
+     * @return the pending buffer, positioned on the content of the record
+     */
+    private ByteBuffer reserve(int length) {
+        if (pending.remaining() < RECORD_HEADER + length) {
+            ByteBuffer larger = newBuffer(Math.max(pending.capacity() * 2, pending.position() + RECORD_HEADER + length));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        recordStart = pending.position();
+        pending.putInt(length).putInt(0);
+        return pending;
+    }
+
+    /**
+     * Fills the checksum of the record being appended
+     */
+    private void seal(ByteBuffer record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record.duplicate().position(recordStart + RECORD_HEADER).limit(record.position()));
+        record.putInt(recordStart + Integer.BYTES, (int) crc.getValue());
+        appended++;
+    }
+
+    private long appended() {
+        lock.lock();
+        try {
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until a record is on disk, syncing the log if no other thread does
+     */
+    private void awaitDurable(long sequence) throws IOException {
+        synchronized (syncMonitor) {
+            while (durable < sequence && syncing) {
+                try {
+                    syncMonitor.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while syncing the agenda log");
+                }
+            }
+            if (durable >= sequence) {
+                return;
+            }
+            syncing = true;
+        }
+        long target = sequence;
+        boolean full = false;
+        try {
+            lock.lock();
+            try {
+                target = appended;
+                swapPending();
+            } finally {
+                lock.unlock();
+            }
+            // Other threads keep appending to the pending buffer meanwhile
+            writeSpare();
+            segment.force(false);
+            if (segment.size() >= segmentSize) {
+                roll();
+                full = true;
+            }
+        } finally {
+            endSync(target);
+        }
+        if (full) {
+            scheduleCompaction();
+        }
+    }
+
+    private void beginSync() throws InterruptedIOException {
+        while (syncing) {
+            try {
+                syncMonitor.wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while syncing the agenda log");
+            }
+        }
+        syncing = true;
+    }
+
+    private void endSync(long target) {
+        synchronized (syncMonitor) {
+            syncing = false;
+            durable = Math.max(durable, target);
+            syncMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Moves the pending records to the spare buffer, which the next appends do
+     * not touch (called under the lock, by the syncing thread)
+     */
+    private void swapPending() {
+        ByteBuffer batch = pending;
+        pending = spare;
+        spare = batch;
+        pending.clear();
+    }
+
+    /**
+     * Writes the records of the spare buffer, without the lock : only the
+     * syncing thread uses the spare buffer
+     */
+    private void writeSpare() throws IOException {
+        spare.flip();
+        while (spare.hasRemaining()) {
+            segment.write(spare);
+        }
+        spare.clear();
+    }
+
+    /**
+     * Closes the current segment and starts the next one (by the syncing thread)
+     *
+     * @return the identifier of the new segment
+     */
+    private long roll() throws IOException {
+        segment.force(false);
+        segment.close();
+        segmentId++;
+        segment = openSegment(segmentId);
+        fullSegments++;
+        return segmentId;
+    }
+
+    private void scheduleCompaction() {
+        synchronized (syncMonitor) {
+            if (compacting || closed || fullSegments < segmentsBeforeCompaction) {
+                return;
+            }
+            compacting = true;
+        }
+        compaction.execute(() -> {
+            try {
+                compact();
+            } catch (IOException | RuntimeException ex) {
+                // The segments are kept : the next full segment tries again
+                compactionFailure.set(ex);
+            } finally {
+                synchronized (syncMonitor) {
+                    compacting = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Loads the last snapshot and replays the segments that follow it
+     */
+    private void recover() throws IOException {
+        replaying = true;
+        try {
+            replayAll();
+        } finally {
+            replaying = false;
+        }
+    }
+
+    private void replayAll() throws IOException {
+        long snapshotId = -1;
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(".tmp")) {
+                    // A snapshot interrupted by a crash
+                    Files.delete(file);
+                }
+                snapshotId = Math.max(snapshotId, fileId(file, "snapshot-", ".bin"));
+                long id = fileId(file, "wal-", ".log");
+                if (id >= 0) {
+                    segments.put(id, file);
+                }
+            }
+        }
+        if (snapshotId >= 0) {
+            MappedAgenda snapshot = MappedAgenda.open(directory.resolve(snapshotName(snapshotId)));
+            for (int i = 0; i < snapshot.size(); i++) {
+                apply(snapshot.getEvent(i));
+            }
+        }
+        boolean torn = false;
+        for (Map.Entry<Long, Path> entry : segments.entrySet()) {
+            if (entry.getKey() < snapshotId) {
+                continue;
+            }
+            if (torn) {
+                // Records after a torn one were never acknowledged
+                Files.delete(entry.getValue());
+                continue;
+            }
+            torn = !replay(entry.getValue());
+        }
+        segmentId = Math.max(snapshotId, segments.isEmpty() ? 0 : segments.lastKey() + 1);
+        segment = openSegment(segmentId);
+    }
+
+    /**
+     * Replays the records of a segment, truncating it at the first torn record
+     *
+     * @return true if every record of the segment was valid
+     */
+    private boolean replay(Path file) throws IOException {
+        ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(file)).order(MappedAgenda.BYTE_ORDER);
+        CRC32C crc = new CRC32C();
+        while (log.remaining() >= RECORD_HEADER) {
+            int start = log.position();
+            int length = log.getInt();
+            int checksum = log.getInt();
+            boolean valid = length > 0 && length <= log.remaining();
+            if (valid) {
+                crc.reset();
+                crc.update(log.duplicate().limit(log.position() + length));
+                valid = (int) crc.getValue() == checksum;
+            }
+            if (!valid) {
+                log.position(start);
+                break;
+            }
+            ByteBuffer record = log.slice(log.position(), length).order(MappedAgenda.BYTE_ORDER);
+            log.position(log.position() + length);
+            replay(record);
+        }
+        if (log.hasRemaining()) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(log.position());
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private void replay(ByteBuffer record) {
+        byte type = record.get();
+        if (type == EXCEPTION) {
+            // A single exception, as logged before whole events were logged on each change
+            Event e = agenda.getEvents().get(record.getInt());
+            e.addException(LocalDate.ofEpochDay(record.getLong()));
+        } else if (type == UPDATE) {
+            Event e = agenda.getEvents().get(record.getInt());
+            copy(readEvent(record), e);
+        } else {
+            apply(readEvent(record));
+        }
+    }
+
+    private static Event readEvent(ByteBuffer record) {
+        int titleLength = record.getInt();
+        String title = null;
+        if (titleLength >= 0) {
+            byte[] bytes = new byte[titleLength];
+            record.get(bytes);
+            title = new String(bytes, StandardCharsets.UTF_8);
+        }
+        long start = record.getLong();
+        long duration = record.getLong();
+        byte code = record.get();
+        long lastDay = record.getLong();
+        long[] exceptions = new long[record.getInt()];
+        for (int x = 0; x < exceptions.length; x++) {
+            exceptions[x] = record.getLong();
+        }
+        return ColumnarAgenda.event(title, start, duration, code, lastDay, exceptions, 0, exceptions.length);
+    }
+
+    /**
+     * Changes an event into another one through its setters, so that the
+     * indexes follow
+     */
+    private static void copy(Event from, Event to) {
+        to.setStart(from.getStart());
+        to.setDuration(from.getDuration());
+        Repetition r = from.getRepetition();
+        to.setRepetition(r == null ? null : r.getFrequency());
+        if (r != null) {
+            r.getExceptions().forEach(to::addException);
+            to.getRepetition().setTermination(r.getTermination());
+        }
+    }
+
+    /**
+     * Throws the failure of the last background compaction, once
+     */
+    private void reportCompactionFailure() throws IOException {
+        Exception failure = compactionFailure.getAndSet(null);
+        if (failure != null) {
+            throw new IOException("Background compaction failed", failure);
+        }
+    }
+
+    private FileChannel openSegment(long id) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(segmentName(id)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        // Without it, a crash may lose the new segment and the records synced to it
+        syncDirectory();
+        return channel;
+    }
+
+    /**
+     * Makes the files created, renamed or deleted in the directory durable
+     */
+    private void syncDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException ex) {
+            // Windows cannot open a directory, whose entries it syncs with the files
+        }
+    }
+
+    private static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(MappedAgenda.BYTE_ORDER);
+    }
+
+    private static String segmentName(long id) {
+        return "wal-%012d.log".formatted(id);
+    }
+
+    private static String snapshotName(long id) {
+        return "snapshot-%012d.bin".formatted(id);
+    }
+
+    /**
+     * @return the identifier in the name of a file, -1 if it does not have this prefix and suffix
+     */
+    private static long fileId(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(prefix) || !name.endsWith(suffix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+
+/**
+ * Description : calendar computations on epoch days (number of days since
+ * 1970-01-01), without allocating {@link java.time.LocalDate} objects
+ */
+final class EpochDays {
+
+    private EpochDays() {
+    }
+
+    /**
+     * Computes the day of month of an epoch day, in the proleptic Gregorian calendar
+     * (H. Hinnant, "chrono-compatible low-level date algorithms")
+     *
+     * @param epochDay the number of days since 1970-01-01
+     * @return the day of month, from 1 to 31
+     */
+    static int dayOfMonth(long epochDay) {
+        // Days since 0000-03-01, so that the leap day is the last day of a year
+        long z = epochDay + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1_460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long month = (5 * dayOfYear + 2) / 153;
+        return (int) (dayOfYear - (153 * month + 2) / 5 + 1);
+    }
+
+    /**
+     * Tests if a repetition occurs on a given day : an occurrence, which is not an
+     * exception, starts between day - spanInDays and day. Only the days where the
+     * repetition may start an occurrence are visited.
+     *
+     * @param frequency the frequency of the repetition
+     * @param startDay the day of the first occurrence
+     * @param spanInDays the number of days after its start day that an occurrence reaches
+     * @param lastDay the last day an occurrence may start (Long.MAX_VALUE if none)
+     * @param exceptions sorted exceptions, in exceptions[exceptionsFrom..exceptionsTo[
+     * @param exceptionsFrom the index of the first exception
+     * @param exceptionsTo the index after the last exception
+     * @param day the day to test
+     * @return true if an occurrence of the repetition occurs on that day
+     */
+    static boolean repeatsOn(ChronoUnit frequency, long startDay, long spanInDays, long lastDay,
+                             long[] exceptions, int exceptionsFrom, int exceptionsTo, long day) {
+        long from = Math.max(startDay, day - spanInDays);
+        long to = Math.min(day, lastDay);
+        switch (frequency) {
+            case DAYS:
+                for (long d = to; d >= from; d--) {
+                    if (Arrays.binarySearch(exceptions, exceptionsFrom, exceptionsTo, d) < 0)
+                        return true;
+                }
+                return false;
+            case WEEKS:
+                for (long d = to - Math.floorMod(to - startDay, 7); d >= from; d -= 7) {
+                    if (Arrays.binarySearch(exceptions, exceptionsFrom, exceptionsTo, d) < 0)
+                        return true;
+                }
+                return false;
+            case MONTHS:
+                // Months that do not have this day (ex : the 31st) are skipped
+                int startDayOfMonth = dayOfMonth(startDay);
+                for (long d = to; d >= from; ) {
+                    int dayOfMonth = dayOfMonth(d);
+                    if (dayOfMonth == startDayOfMonth
+                            && Arrays.binarySearch(exceptions, exceptionsFrom, exceptionsTo, d) < 0)
+                        return true;
+                    // Same day in this month, or last day of the previous one
+                    d -= dayOfMonth > startDayOfMonth ? dayOfMonth - startDayOfMonth : dayOfMonth;
+                }
+                return false;
+            default:
+                LocalDate startDate = LocalDate.ofEpochDay(startDay);
+                for (long d = to; d >= from; d--) {
+                    LocalDate aDay = LocalDate.ofEpochDay(d);
+                    if (startDate.plus(frequency.between(startDate, aDay), frequency).equals(aDay)
+                            && Arrays.binarySearch(exceptions, exceptionsFrom, exceptionsTo, d) < 0)
+                        return true;
+                }
+                return false;
+        }
+    }
+}
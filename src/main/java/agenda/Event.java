@@ -1,147 +1,344 @@
-package agenda;
-
-import java.time.*;
-import java.time.temporal.ChronoUnit;
-
-public class Event {
-
-    /**
-     * The myTitle of this event
-     */
-    private String myTitle;
-    
-    /**
-     * The starting time of the event
-     */
-    private LocalDateTime myStart;
-
-    /**
-     * The durarion of the event 
-     */
-    private Duration myDuration;
-
-
-    /**
-     * Constructs an event
-     *
-     * @param title the title of this event
-     * @param start the start time of this event
-     * @param duration the duration of this event
-     */
-    private Repetition repetition;
-
-    public Event(String title, LocalDateTime start, Duration duration) {
-        this.myTitle = title;
-        this.myStart = start;
-        this.myDuration = duration;
-    }
-    public boolean hasRepetition() {
-        return repetition != null;
-    }
-
-    public void setRepetition(ChronoUnit frequency) {
-        // TODO : implémenter cette méthode
-        this.repetition = new Repetition(frequency);
-    }
-
-    public void addException(LocalDate date) {
-        // TODO : implémenter cette méthode
-        if (repetition != null){
-            repetition.addException(date);
-        }    
-    }
-
-    public void setTermination(LocalDate terminationInc) {
-        // TODO : implémenter cette méthode
-        if (repetition != null){
-            repetition.setTermination(new Termination(myStart.toLocalDate(), repetition.getFrequency(), terminationInc));
-        }
-    }
-
-    public void setTermination(long numberOfOccurrences) {
-        // TODO : implémenter cette méthode
-        if (repetition != null){
-            repetition.setTermination(new Termination(myStart.toLocalDate(), repetition.getFrequency(), numberOfOccurrences));
-        }
-    }
-
-    public int getNumberOfOccurrences() {
-        // TODO : implémenter cette méthode
-        if (repetition == null || repetition.getTermination() == null)
-            return Integer.MAX_VALUE; 
-        return (int) repetition.getTermination().numberOfOccurrences();    }
-
-    public LocalDate getTerminationDate() {
-        // TODO : implémenter cette méthode
-        if (repetition == null || repetition.getTermination() == null)
-            return null;
-        return repetition.getTermination().terminationDateInclusive();
-    }
-
-    /**
-     * Tests if an event occurs on a given day
-     *
-     * @param aDay the day to test
-     * @return true if the event occurs on that day, false otherwise
-     */
-    public boolean isInDay(LocalDate aDay) {
-        // TODO : implémenter cette méthode
- // Cas événement simple
-        if (repetition == null) {
-            LocalDate startDay = myStart.toLocalDate();
-            LocalDate endDay = myStart.plus(myDuration).toLocalDate();
-
-            return !aDay.isBefore(startDay) && !aDay.isAfter(endDay);
-        }
-
-        // Cas répétitif :
-        LocalDate startDate = myStart.toLocalDate();
-
-        if (aDay.isBefore(startDate))
-            return false;
-
-        if (repetition.isException(aDay))
-            return false;
-
-        ChronoUnit freq = repetition.getFrequency();
-        long steps = freq.between(startDate, aDay);
-
-        if (!startDate.plus(steps, freq).equals(aDay))
-            return false;
-
-        if (repetition.getTermination() != null) {
-            Termination t = repetition.getTermination();
-
-            if (aDay.isAfter(t.terminationDateInclusive()))
-                return false;
-        }
-
-        return true;    }
-   
-    /**
-     * @return the myTitle
-     */
-    public String getTitle() {
-        return myTitle;
-    }
-
-    /**
-     * @return the myStart
-     */
-    public LocalDateTime getStart() {
-        return myStart;
-    }
-
-
-    /**
-     * @return the myDuration
-     */
-    public Duration getDuration() {
-        return myDuration;
-    }
-
-    @Override
-    public String toString() {
-        return "Event{title='%s', start=%s, duration=%s}".formatted(myTitle, myStart, myDuration);
-    }
-}
+package agenda;
+
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+public class Event {
+
+    /**
+     * The myTitle of this event
+     */
+    private String myTitle;
+    
+    /**
+     * The starting time of the event
+     */
+    private LocalDateTime myStart;
+
+    /**
+     * The durarion of the event 
+     */
+    private Duration myDuration;
+
+    /**
+     * The day the event starts and the day its first occurrence ends, as epoch days
+     */
+    private long startEpochDay;
+    private long endEpochDay;
+
+
+    /**
+     * Constructs an event
+     *
+     * @param title the title of this event
+     * @param start the start time of this event
+     * @param duration the duration of this event
+     */
+    private Repetition repetition;
+
+    /**
+     * Notified around each change of this event, null if no one listens
+     */
+    private ChangeListener listener;
+
+    /**
+     * Notified around each change of an event or of its repetition, so that the
+     * agenda holding the event can update the structures derived from it. Both
+     * methods are called by the thread changing the event.
+     */
+    interface ChangeListener {
+
+        /**
+         * Called before an event changes, while it is still in its former state
+         */
+        void beforeChange(Event e);
+
+        /**
+         * Called after an event changed, even if the change failed
+         */
+        void afterChange(Event e);
+    }
+
+    public Event(String title, LocalDateTime start, Duration duration) {
+        this.myTitle = title;
+        this.myStart = start;
+        this.myDuration = duration;
+        this.startEpochDay = start.toLocalDate().toEpochDay();
+        this.endEpochDay = start.plus(duration).toLocalDate().toEpochDay();
+    }
+    public boolean hasRepetition() {
+        return repetition != null;
+    }
+
+    public void setRepetition(ChronoUnit frequency) {
+        // TODO : implémenter cette méthode
+        ChangeListener l = listener;
+        if (l != null) {
+            l.beforeChange(this);
+        }
+        try {
+            if (repetition != null) {
+                repetition.setEvent(null);
+            }
+            this.repetition = frequency == null ? null : new Repetition(frequency);
+            if (repetition != null) {
+                repetition.setEvent(this);
+            }
+        } finally {
+            if (l != null) {
+                l.afterChange(this);
+            }
+        }
+    }
+
+    /**
+     * Moves this event. A termination given as a number of occurrences keeps that
+     * number, and its date moves with the start. A termination given as a date
+     * keeps its date, and its number of occurrences is computed again.
+     *
+     * @param start the new start time of this event
+     */
+    public void setStart(LocalDateTime start) {
+        ChangeListener l = listener;
+        if (l != null) {
+            l.beforeChange(this);
+        }
+        try {
+            this.myStart = start;
+            this.startEpochDay = start.toLocalDate().toEpochDay();
+            this.endEpochDay = start.plus(myDuration).toLocalDate().toEpochDay();
+            if (repetition != null) {
+                repetition.restart(start.toLocalDate());
+            }
+        } finally {
+            if (l != null) {
+                l.afterChange(this);
+            }
+        }
+    }
+
+    /**
+     * Changes the duration of this event
+     *
+     * @param duration the new duration of this event
+     */
+    public void setDuration(Duration duration) {
+        ChangeListener l = listener;
+        if (l != null) {
+            l.beforeChange(this);
+        }
+        try {
+            this.myDuration = duration;
+            this.endEpochDay = myStart.plus(duration).toLocalDate().toEpochDay();
+        } finally {
+            if (l != null) {
+                l.afterChange(this);
+            }
+        }
+    }
+
+    /**
+     * @return the listener notified around each change of this event, null if none
+     */
+    ChangeListener getChangeListener() {
+        return listener;
+    }
+
+    /**
+     * Sets the listener notified around each change of this event or of its
+     * repetition : there is at most one, the agenda that indexes this event
+     *
+     * @param listener the listener, null for none
+     */
+    void setChangeListener(ChangeListener listener) {
+        this.listener = listener;
+    }
+
+    public void addException(LocalDate date) {
+        // TODO : implémenter cette méthode
+        if (repetition != null){
+            repetition.addException(date);
+        }    
+    }
+
+    public void setTermination(LocalDate terminationInc) {
+        // TODO : implémenter cette méthode
+        if (repetition != null){
+            repetition.setTermination(new Termination(myStart.toLocalDate(), repetition.getFrequency(), terminationInc));
+        }
+    }
+
+    public void setTermination(long numberOfOccurrences) {
+        // TODO : implémenter cette méthode
+        if (repetition != null){
+            repetition.setTermination(new Termination(myStart.toLocalDate(), repetition.getFrequency(), numberOfOccurrences));
+        }
+    }
+
+    public int getNumberOfOccurrences() {
+        // TODO : implémenter cette méthode
+        if (repetition == null || repetition.getTermination() == null)
+            return Integer.MAX_VALUE; 
+        return (int) repetition.getTermination().numberOfOccurrences();    }
+
+    public LocalDate getTerminationDate() {
+        // TODO : implémenter cette méthode
+        if (repetition == null || repetition.getTermination() == null)
+            return null;
+        return repetition.getTermination().terminationDateInclusive();
+    }
+
+    /**
+     * Tests if an event occurs on a given day
+     *
+     * @param aDay the day to test
+     * @return true if the event occurs on that day, false otherwise
+     */
+    public boolean isInDay(LocalDate aDay) {
+        return isInDay(aDay.toEpochDay());
+    }
+
+    /**
+     * Tests if an event occurs on a given day, without allocating. Like a simple
+     * event, each occurrence of a repeating event occurs on every day from its
+     * start to its end.
+     *
+     * @param epochDay the day to test, as a number of days since 1970-01-01
+     * @return true if the event occurs on that day, false otherwise
+     * @see LocalDate#toEpochDay()
+     */
+    public boolean isInDay(long epochDay) {
+        // Cas événement simple
+        if (repetition == null) {
+            return epochDay >= startEpochDay && epochDay <= endEpochDay;
+        }
+
+        // Cas répétitif : une occurrence doit commencer entre epochDay - span et epochDay
+        return EpochDays.repeatsOn(repetition.getFrequency(), startEpochDay, spanInDays(),
+                repetition.lastEpochDay(), repetition.exceptionDays(), 0, repetition.getExceptionCount(), epochDay);
+    }
+
+    /**
+     * Computes the start of the first occurrence of this event after a given time.
+     * Only the occurrences from the one due at this time on are visited : a few,
+     * unless many consecutive occurrences are exceptions.
+     *
+     * @param time a time
+     * @return the start of the first occurrence strictly after time, null if there is none
+     */
+    public LocalDateTime nextOccurrenceAfter(LocalDateTime time) {
+        return nextOccurrenceFrom(time.plusNanos(1));
+    }
+
+    /**
+     * @return the start of the first occurrence at or after time, null if there is none
+     * @see #nextOccurrenceAfter(LocalDateTime)
+     */
+    LocalDateTime nextOccurrenceFrom(LocalDateTime time) {
+        if (repetition == null) {
+            return myStart.isBefore(time) ? null : myStart;
+        }
+        LocalDate startDate = myStart.toLocalDate();
+        LocalTime timeOfDay = myStart.toLocalTime();
+        ChronoUnit freq = repetition.getFrequency();
+        long lastDay = repetition.lastEpochDay();
+        // The occurrence due on the day of time, or the one before
+        for (long k = Math.max(0, freq.between(startDate, time.toLocalDate()) - 1); ; k++) {
+            LocalDate day = startDate.plus(k, freq);
+            if (day.toEpochDay() > lastDay) {
+                return null;
+            }
+            LocalDateTime start = day.atTime(timeOfDay);
+            // An occurrence that would fall on a missing day (ex : the 31st) does not occur
+            if (freq.between(startDate, day) == k && !start.isBefore(time) && !repetition.isException(day)) {
+                return start;
+            }
+        }
+    }
+
+    /**
+     * Computes the occurrences of this event that occur between two days,
+     * including those that start before and end during this period
+     *
+     * @param from the first day (inclusive)
+     * @param to the last day (inclusive)
+     * @return the start times of these occurrences, in chronological order,
+     * computed lazily
+     */
+    public Stream<LocalDateTime> occurrencesBetween(LocalDate from, LocalDate to) {
+        if (repetition == null) {
+            LocalDate startDay = myStart.toLocalDate();
+            LocalDate endDay = myStart.plus(myDuration).toLocalDate();
+            boolean overlaps = !to.isBefore(startDay) && !from.isAfter(endDay);
+            return overlaps ? Stream.of(myStart) : Stream.empty();
+        }
+
+        LocalDate startDate = myStart.toLocalDate();
+        ChronoUnit freq = repetition.getFrequency();
+        LocalDate termination = getTerminationDate();
+        LocalDate last = termination != null && termination.isBefore(to) ? termination : to;
+
+        // Index of the first occurrence that ends on or after "from"
+        LocalDate firstStart = from.minusDays(spanInDays());
+        long first = Math.max(0, freq.between(startDate, firstStart));
+        if (startDate.plus(first, freq).isBefore(firstStart))
+            first++;
+
+        return LongStream.iterate(first, k -> !startDate.plus(k, freq).isAfter(last), k -> k + 1)
+                // An occurrence that would fall on a missing day (ex : the 31st) does not occur
+                .filter(k -> freq.between(startDate, startDate.plus(k, freq)) == k)
+                .mapToObj(k -> startDate.plus(k, freq))
+                .filter(day -> !repetition.isException(day))
+                .map(day -> day.atTime(myStart.toLocalTime()));
+    }
+   
+    /**
+     * @return the myTitle
+     */
+    public String getTitle() {
+        return myTitle;
+    }
+
+    /**
+     * @return the myStart
+     */
+    public LocalDateTime getStart() {
+        return myStart;
+    }
+
+
+    /**
+     * @return the myDuration
+     */
+    public Duration getDuration() {
+        return myDuration;
+    }
+
+    /**
+     * @return the day this event starts, as an epoch day
+     */
+    long startEpochDay() {
+        return startEpochDay;
+    }
+
+    /**
+     * @return the number of days after its start day that an occurrence reaches
+     */
+    long spanInDays() {
+        return Math.max(0, endEpochDay - startEpochDay);
+    }
+
+    /**
+     * @return the repetition of this event, or null for a simple event
+     */
+    public Repetition getRepetition() {
+        return repetition;
+    }
+
+    @Override
+    public String toString() {
+        return "Event{title='%s', start=%s, duration=%s}".formatted(myTitle, myStart, myDuration);
+    }
+}
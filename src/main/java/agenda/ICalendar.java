@@ -0,0 +1,477 @@
+package agenda;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Description : reads and writes events in the iCalendar format (RFC 5545), as
+ * a stream : one line at a time, holding one event at most in memory.
+ * <p>
+ * Each VEVENT gives an {@link Event} : SUMMARY is its title, DTSTART its start,
+ * DTEND or DURATION its duration. An RRULE with FREQ=DAILY, WEEKLY, MONTHLY or
+ * YEARLY gives its repetition, COUNT or UNTIL its termination and EXDATE its
+ * exceptions. Other components are ignored, as well as the events whose RRULE
+ * has other parts (INTERVAL, BYDAY...) that an {@link Event} cannot repeat.
+ * <p>
+ * Times are local times of the agenda : time zones (TZID, UTC) are ignored.
+ */
+public final class ICalendar {
+
+    /**
+     * Lines longer than this, in bytes, are folded
+     */
+    private static final int LINE_LENGTH = 75;
+
+    private ICalendar() {
+    }
+
+    /**
+     * Reads the events of an iCalendar stream into an agenda, adding them at once
+     *
+     * @param in the stream to read
+     * @param agenda the agenda receiving the events
+     * @return the number of events added
+     * @throws IOException if the stream cannot be read or is not valid iCalendar
+     */
+    public static int importInto(Reader in, Agenda agenda) throws IOException {
+        List<Event> events = new ArrayList<>();
+        read(in, events::add);
+        agenda.addAll(events);
+        return events.size();
+    }
+
+    /**
+     * Reads the events of an iCalendar stream
+     *
+     * @param in the stream to read
+     * @param out receives each event, fully defined, in the order of the stream
+     * @return the number of events read
+     * @throws IOException if the stream cannot be read or is not valid iCalendar
+     */
+    public static int read(Reader in, Consumer<Event> out) throws IOException {
+        BufferedReader reader = in instanceof BufferedReader b ? b : new BufferedReader(in, 1 << 16);
+        VEvent event = null;
+        int depth = 0;
+        int count = 0;
+        int lineNumber = 0;
+        StringBuilder line = new StringBuilder();
+        String next = reader.readLine();
+        while (next != null) {
+            // Unfold the continuation lines
+            line.setLength(0);
+            line.append(next);
+            lineNumber++;
+            int first = lineNumber;
+            while ((next = reader.readLine()) != null && !next.isEmpty()
+                    && (next.charAt(0) == ' ' || next.charAt(0) == '\t')) {
+                line.append(next, 1, next.length());
+                lineNumber++;
+            }
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                String name = propertyName(line);
+                if (name.equals("BEGIN")) {
+                    if (value(line).equals("VEVENT") && depth == 0) {
+                        event = new VEvent();
+                    } else if (event != null) {
+                        // A component nested in an event (VALARM)
+                        depth++;
+                    }
+                } else if (name.equals("END")) {
+                    if (depth > 0) {
+                        depth--;
+                    } else if (event != null && value(line).equals("VEVENT")) {
+                        Event e = event.toEvent();
+                        if (e != null) {
+                            out.accept(e);
+                            count++;
+                        }
+                        event = null;
+                    }
+                } else if (event != null && depth == 0) {
+                    event.property(name, line);
+                }
+            } catch (DateTimeException | IllegalArgumentException ex) {
+                throw new IOException("Invalid iCalendar line " + first + " : " + line, ex);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes events as an iCalendar stream
+     *
+     * @param events the events to write
+     * @param out the stream to write, which is not closed
+     * @throws IOException if the stream cannot be written
+     */
+    public static void write(Iterable<Event> events, Writer out) throws IOException {
+        String stamp = dateTime(LocalDateTime.now(ZoneOffset.UTC)) + "Z";
+        StringBuilder line = new StringBuilder();
+        out.write("BEGIN:VCALENDAR\r\nVERSION:2.0\r\nPRODID:-//agenda//iCalendar//FR\r\n");
+        int uid = 0;
+        for (Event e : events) {
+            out.write("BEGIN:VEVENT\r\nUID:");
+            out.write(Integer.toString(uid++));
+            out.write("@agenda\r\nDTSTAMP:");
+            out.write(stamp);
+            out.write("\r\n");
+            if (e.getTitle() != null) {
+                line.setLength(0);
+                line.append("SUMMARY:");
+                escape(e.getTitle(), line);
+                writeFolded(line, out);
+            }
+            out.write("DTSTART:");
+            out.write(dateTime(e.getStart()));
+            out.write("\r\nDURATION:");
+            out.write(duration(e.getDuration()));
+            out.write("\r\n");
+            Repetition r = e.getRepetition();
+            if (r != null) {
+                writeRepetition(e, r, line, out);
+            }
+            out.write("END:VEVENT\r\n");
+        }
+        out.write("END:VCALENDAR\r\n");
+        out.flush();
+    }
+
+    private static void writeRepetition(Event e, Repetition r, StringBuilder line, Writer out) throws IOException {
+        out.write("RRULE:FREQ=");
+        out.write(switch (r.getFrequency()) {
+            case DAYS -> "DAILY";
+            case WEEKS -> "WEEKLY";
+            case MONTHS -> "MONTHLY";
+            case YEARS -> "YEARLY";
+            default -> throw new IllegalArgumentException("No iCalendar frequency for " + r.getFrequency());
+        });
+        Termination termination = r.getTermination();
+        if (termination != null) {
+            if ((ColumnarAgenda.code(e) & ColumnarAgenda.TERMINATION_BY_COUNT) != 0) {
+                out.write(";COUNT=");
+                out.write(Long.toString(termination.numberOfOccurrences()));
+            } else {
+                out.write(";UNTIL=");
+                out.write(dateTime(termination.terminationDateInclusive().atTime(23, 59, 59)));
+            }
+        }
+        out.write("\r\n");
+        if (r.getExceptionCount() > 0) {
+            line.setLength(0);
+            line.append("EXDATE:");
+            long[] exceptions = r.exceptionDays();
+            for (int x = 0; x < r.getExceptionCount(); x++) {
+                if (x > 0) {
+                    line.append(',');
+                }
+                line.append(dateTime(LocalDate.ofEpochDay(exceptions[x]).atTime(e.getStart().toLocalTime())));
+            }
+            writeFolded(line, out);
+        }
+    }
+
+    /**
+     * The properties of the event being read
+     */
+    private static final class VEvent {
+        String summary;
+        LocalDateTime start;
+        boolean allDay;
+        LocalDateTime end;
+        Duration duration;
+        ChronoUnit frequency;
+        long count = -1;
+        LocalDateTime until;
+        boolean untilDate;
+        boolean unsupported;
+        final List<LocalDate> exceptions = new ArrayList<>();
+
+        void property(String name, CharSequence line) {
+            switch (name) {
+                case "SUMMARY" -> summary = unescape(value(line));
+                case "DTSTART" -> {
+                    String value = value(line);
+                    allDay = value.length() == 8;
+                    start = parseDateTime(value);
+                }
+                case "DTEND" -> end = parseDateTime(value(line));
+                case "DURATION" -> duration = parseDuration(value(line));
+                case "RRULE" -> rule(value(line));
+                case "EXDATE" -> {
+                    String value = value(line);
+                    for (int from = 0; from < value.length(); ) {
+                        int comma = value.indexOf(',', from);
+                        int to = comma < 0 ? value.length() : comma;
+                        exceptions.add(parseDate(value, from));
+                        from = to + 1;
+                    }
+                }
+                default -> { }
+            }
+        }
+
+        private void rule(String rule) {
+            for (int from = 0; from < rule.length(); ) {
+                int semicolon = rule.indexOf(';', from);
+                int to = semicolon < 0 ? rule.length() : semicolon;
+                int equals = rule.indexOf('=', from);
+                if (equals < 0 || equals > to) {
+                    throw new IllegalArgumentException("Invalid RRULE part : " + rule.substring(from, to));
+                }
+                String part = rule.substring(from, equals);
+                String value = rule.substring(equals + 1, to);
+                switch (part) {
+                    case "FREQ" -> frequency = switch (value) {
+                        case "DAILY" -> ChronoUnit.DAYS;
+                        case "WEEKLY" -> ChronoUnit.WEEKS;
+                        case "MONTHLY" -> ChronoUnit.MONTHS;
+                        case "YEARLY" -> ChronoUnit.YEARS;
+                        default -> {
+                            unsupported = true;
+                            yield null;
+                        }
+                    };
+                    case "COUNT" -> count = Long.parseLong(value);
+                    case "UNTIL" -> {
+                        untilDate = value.length() == 8;
+                        until = parseDateTime(value);
+                    }
+                    case "INTERVAL" -> unsupported |= !value.equals("1");
+                    case "WKST" -> { }
+                    default -> unsupported = true;
+                }
+                from = to + 1;
+            }
+        }
+
+        /**
+         * @return the event, or null if it cannot be represented
+         */
+        Event toEvent() {
+            if (start == null || unsupported) {
+                return null;
+            }
+            Duration d = duration != null ? duration
+                    : end != null ? Duration.between(start, end)
+                    : allDay ? Duration.ofDays(1) : Duration.ZERO;
+            Event e = new Event(summary, start, d);
+            if (frequency != null) {
+                e.setRepetition(frequency);
+                for (LocalDate exception : exceptions) {
+                    e.addException(exception);
+                }
+                if (count >= 0) {
+                    e.setTermination(count);
+                } else if (until != null) {
+                    e.setTermination(lastDay());
+                }
+            }
+            return e;
+        }
+
+        /**
+         * @return the day of the last occurrence started at UNTIL at the latest :
+         * the day before UNTIL if the occurrences start later in the day
+         */
+        private LocalDate lastDay() {
+            LocalDate last = until.toLocalDate();
+            return !untilDate && start.toLocalTime().isAfter(until.toLocalTime()) ? last.minusDays(1) : last;
+        }
+    }
+
+    private static String propertyName(CharSequence line) {
+        int end = 0;
+        while (end < line.length() && line.charAt(end) != ':' && line.charAt(end) != ';') {
+            end++;
+        }
+        if (end == line.length()) {
+            throw new IllegalArgumentException("No value");
+        }
+        return line.subSequence(0, end).toString();
+    }
+
+    /**
+     * @return the value of a property, after the first colon that is not quoted
+     */
+    private static String value(CharSequence line) {
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ':' && !quoted) {
+                return line.subSequence(i + 1, line.length()).toString();
+            }
+        }
+        throw new IllegalArgumentException("No value");
+    }
+
+    /**
+     * Parses a DATE (yyyyMMdd) or a DATE-TIME (yyyyMMddTHHmmss, with an optional Z)
+     */
+    private static LocalDateTime parseDateTime(String value) {
+        LocalDate date = parseDate(value, 0);
+        if (value.length() == 8) {
+            return date.atStartOfDay();
+        }
+        if (value.length() < 15 || value.charAt(8) != 'T') {
+            throw new IllegalArgumentException("Invalid DATE-TIME : " + value);
+        }
+        return date.atTime(number(value, 9, 11), number(value, 11, 13), number(value, 13, 15));
+    }
+
+    private static LocalDate parseDate(String value, int from) {
+        if (value.length() < from + 8) {
+            throw new IllegalArgumentException("Invalid DATE : " + value);
+        }
+        return LocalDate.of(number(value, from, from + 4), number(value, from + 4, from + 6),
+                number(value, from + 6, from + 8));
+    }
+
+    private static int number(String value, int from, int to) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("Invalid number : " + value);
+            }
+            n = n * 10 + digit;
+        }
+        return n;
+    }
+
+    /**
+     * Parses a DURATION : [+-]P[nW] or [+-]P[nD][T[nH][nM][nS]]
+     */
+    private static Duration parseDuration(String value) {
+        int i = 0;
+        boolean negative = false;
+        if (i < value.length() && (value.charAt(i) == '+' || value.charAt(i) == '-')) {
+            negative = value.charAt(i) == '-';
+            i++;
+        }
+        if (i >= value.length() || value.charAt(i) != 'P') {
+            throw new IllegalArgumentException("Invalid DURATION : " + value);
+        }
+        long seconds = 0;
+        long n = -1;
+        for (i++; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                n = (n < 0 ? 0 : n * 10) + c - '0';
+                continue;
+            }
+            if (c == 'T') {
+                continue;
+            }
+            if (n < 0) {
+                throw new IllegalArgumentException("Invalid DURATION : " + value);
+            }
+            seconds += n * switch (c) {
+                case 'W' -> 7 * 86_400;
+                case 'D' -> 86_400;
+                case 'H' -> 3_600;
+                case 'M' -> 60;
+                case 'S' -> 1;
+                default -> throw new IllegalArgumentException("Invalid DURATION : " + value);
+            };
+            n = -1;
+        }
+        return Duration.ofSeconds(negative ? -seconds : seconds);
+    }
+
+    private static String dateTime(LocalDateTime time) {
+        StringBuilder s = new StringBuilder(15);
+        pad(s, time.getYear(), 4);
+        pad(s, time.getMonthValue(), 2);
+        pad(s, time.getDayOfMonth(), 2);
+        s.append('T');
+        pad(s, time.getHour(), 2);
+        pad(s, time.getMinute(), 2);
+        pad(s, time.getSecond(), 2);
+        return s.toString();
+    }
+
+    private static void pad(StringBuilder s, int n, int digits) {
+        String value = Integer.toString(n);
+        for (int i = value.length(); i < digits; i++) {
+            s.append('0');
+        }
+        s.append(value);
+    }
+
+    private static String duration(Duration duration) {
+        long seconds = duration.getSeconds();
+        StringBuilder s = new StringBuilder();
+        if (seconds < 0) {
+            s.append('-');
+            seconds = -seconds;
+        }
+        s.append("PT").append(seconds).append('S');
+        return s.toString();
+    }
+
+    private static void escape(String text, StringBuilder out) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\', ';', ',' -> out.append('\\').append(c);
+                case '\n' -> out.append("\\n");
+                case '\r' -> { }
+                default -> out.append(c);
+            }
+        }
+    }
+
+    private static String unescape(String text) {
+        if (text.indexOf('\\') < 0) {
+            return text;
+        }
+        StringBuilder s = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                char escaped = text.charAt(++i);
+                s.append(escaped == 'n' || escaped == 'N' ? '\n' : escaped);
+            } else {
+                s.append(c);
+            }
+        }
+        return s.toString();
+    }
+
+    /**
+     * Writes a content line, folded every 75 bytes (UTF-8) without splitting a character
+     */
+    private static void writeFolded(CharSequence line, Writer out) throws IOException {
+        int bytes = 0;
+        int from = 0;
+        for (int i = 0; i < line.length(); ) {
+            int codePoint = Character.codePointAt(line, i);
+            int width = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (bytes + width > LINE_LENGTH) {
+                out.append(line, from, i).append("\r\n ");
+                from = i;
+                // The leading space of the continuation counts
+                bytes = 1;
+            }
+            bytes += width;
+            i += Character.charCount(codePoint);
+        }
+        out.append(line, from, line.length()).append("\r\n");
+    }
+}
@@ -0,0 +1,187 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+
+/**
+ * Description : an immutable {@link Event}, that can be shared between reader
+ * threads without synchronization. Built by {@link #builder(String, LocalDateTime, Duration)}
+ * or copied from an event by {@link #of(Event)}.
+ * <p>
+ * The start and the duration are kept as seconds rather than as
+ * {@link LocalDateTime} and {@link Duration} objects : the nanoseconds are
+ * dropped.
+ *
+ * @param title the title of this event
+ * @param startSecond the start time of this event, in epoch seconds (UTC)
+ * @param durationSeconds the duration of this event, in seconds
+ * @param repetition the repetition of this event, null if it does not repeat
+ */
+public record ImmutableEvent(String title, long startSecond, long durationSeconds, ImmutableRepetition repetition) {
+
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    /**
+     * Copies an event
+     *
+     * @param e the event to copy
+     * @return an immutable copy of e, to the second
+     */
+    public static ImmutableEvent of(Event e) {
+        return new ImmutableEvent(e.getTitle(), e.getStart().toEpochSecond(ZoneOffset.UTC), e.getDuration().getSeconds(),
+                e.hasRepetition() ? ImmutableRepetition.of(e.getRepetition()) : null);
+    }
+
+    /**
+     * Starts building an event
+     *
+     * @param title the title of the event
+     * @param start the start time of the event
+     * @param duration the duration of the event
+     * @return a builder of this event, without repetition
+     */
+    public static Builder builder(String title, LocalDateTime start, Duration duration) {
+        return new Builder(title, start, duration);
+    }
+
+    public LocalDateTime getStart() {
+        return LocalDateTime.ofEpochSecond(startSecond, 0, ZoneOffset.UTC);
+    }
+
+    public Duration getDuration() {
+        return Duration.ofSeconds(durationSeconds);
+    }
+
+    public boolean hasRepetition() {
+        return repetition != null;
+    }
+
+    /**
+     * Tests if an event occurs on a given day
+     *
+     * @param aDay the day to test
+     * @return true if the event occurs on that day, false otherwise
+     * @see Event#isInDay(LocalDate)
+     */
+    public boolean isInDay(LocalDate aDay) {
+        return isInDay(aDay.toEpochDay());
+    }
+
+    /**
+     * Tests if an event occurs on a given day, without allocating
+     *
+     * @param epochDay the day to test, as a number of days since 1970-01-01
+     * @return true if the event occurs on that day, false otherwise
+     * @see Event#isInDay(long)
+     */
+    public boolean isInDay(long epochDay) {
+        long startDay = Math.floorDiv(startSecond, SECONDS_PER_DAY);
+        long spanInDays = Math.floorDiv(startSecond + durationSeconds, SECONDS_PER_DAY) - startDay;
+        if (repetition == null) {
+            return epochDay >= startDay && epochDay <= startDay + spanInDays;
+        }
+        return repetition.repeatsOn(startDay, spanInDays, epochDay);
+    }
+
+    /**
+     * @return a mutable copy of this event
+     */
+    public Event toEvent() {
+        Event e = new Event(title, getStart(), getDuration());
+        if (repetition == null) {
+            return e;
+        }
+        e.setRepetition(repetition.frequency());
+        for (long day : repetition.exceptionDays()) {
+            e.addException(LocalDate.ofEpochDay(day));
+        }
+        if (repetition.isTerminated()) {
+            e.setTermination(LocalDate.ofEpochDay(repetition.lastEpochDay()));
+            // A count whose date gives another count back, see ColumnarAgenda
+            if (e.getNumberOfOccurrences() != repetition.occurrences()) {
+                e.setTermination(repetition.occurrences());
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Builds an {@link ImmutableEvent}
+     */
+    public static final class Builder {
+
+        private final String title;
+        private final LocalDateTime start;
+        private final Duration duration;
+        private ChronoUnit frequency;
+        private long[] exceptions = new long[0];
+        private int exceptionCount;
+        private Termination termination;
+
+        private Builder(String title, LocalDateTime start, Duration duration) {
+            this.title = title;
+            this.start = start;
+            this.duration = duration;
+        }
+
+        /**
+         * @param frequency the frequency of the repetition
+         * @return this builder
+         */
+        public Builder repeat(ChronoUnit frequency) {
+            this.frequency = frequency;
+            return this;
+        }
+
+        /**
+         * @param date a day where the event must not repeat
+         * @return this builder
+         */
+        public Builder addException(LocalDate date) {
+            if (exceptionCount == exceptions.length) {
+                exceptions = Arrays.copyOf(exceptions, Math.max(4, exceptionCount * 2));
+            }
+            exceptions[exceptionCount++] = date.toEpochDay();
+            return this;
+        }
+
+        /**
+         * @param terminationInclusive the last day the event may repeat on
+         * @return this builder
+         */
+        public Builder terminateOn(LocalDate terminationInclusive) {
+            this.termination = new Termination(start.toLocalDate(), requireFrequency(), terminationInclusive);
+            return this;
+        }
+
+        /**
+         * @param numberOfOccurrences the number of occurrences of the event
+         * @return this builder
+         */
+        public Builder terminateAfter(long numberOfOccurrences) {
+            this.termination = new Termination(start.toLocalDate(), requireFrequency(), numberOfOccurrences);
+            return this;
+        }
+
+        public ImmutableEvent build() {
+            ImmutableRepetition r = null;
+            if (frequency != null) {
+                r = new ImmutableRepetition(frequency, Arrays.copyOf(exceptions, exceptionCount),
+                        termination == null ? Long.MAX_VALUE : termination.terminationDateInclusive().toEpochDay(),
+                        termination == null ? Long.MAX_VALUE : termination.numberOfOccurrences());
+            }
+            return new ImmutableEvent(title, start.toEpochSecond(ZoneOffset.UTC), duration.getSeconds(), r);
+        }
+
+        private ChronoUnit requireFrequency() {
+            if (frequency == null) {
+                throw new IllegalStateException("A termination needs a repetition");
+            }
+            return frequency;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Description : an immutable {@link Repetition}, termination included, that can
+ * be shared between threads and between events without synchronization.
+ * <p>
+ * The exceptions are frozen into a sorted array of epoch days and the
+ * termination is kept as its last day plus its number of occurrences. Two
+ * repetitions with the same rule are equal, so that a map can deduplicate them.
+ *
+ * @param frequency the frequency of the repetition
+ * @param exceptions the days where the event does not repeat, as epoch days
+ * @param lastEpochDay the last day an occurrence may start, as an epoch day
+ * (Long.MAX_VALUE if it repeats forever)
+ * @param occurrences the number of occurrences (Long.MAX_VALUE if it repeats forever)
+ */
+public record ImmutableRepetition(ChronoUnit frequency, long[] exceptions, long lastEpochDay, long occurrences) {
+
+    private static final long[] NO_EXCEPTIONS = new long[0];
+
+    /**
+     * Sorts and copies the exceptions
+     */
+    public ImmutableRepetition {
+        if (frequency == null) {
+            throw new IllegalArgumentException("No frequency");
+        }
+        exceptions = exceptions.length == 0 ? NO_EXCEPTIONS : Arrays.stream(exceptions).sorted().distinct().toArray();
+    }
+
+    /**
+     * Copies a repetition
+     *
+     * @param r the repetition to copy
+     * @return an immutable copy of r
+     */
+    public static ImmutableRepetition of(Repetition r) {
+        Termination t = r.getTermination();
+        return new ImmutableRepetition(r.getFrequency(), Arrays.copyOf(r.exceptionDays(), r.getExceptionCount()),
+                r.lastEpochDay(), t == null ? Long.MAX_VALUE : t.numberOfOccurrences());
+    }
+
+    /**
+     * @return a copy of the exceptions, sorted
+     */
+    @Override
+    public long[] exceptions() {
+        return exceptions.clone();
+    }
+
+    /**
+     * @return the exceptions, sorted
+     */
+    public List<LocalDate> getExceptions() {
+        return Arrays.stream(exceptions).mapToObj(LocalDate::ofEpochDay).toList();
+    }
+
+    /**
+     * @param date a day
+     * @return true if the event must not repeat on that day
+     */
+    public boolean isException(LocalDate date) {
+        return Arrays.binarySearch(exceptions, date.toEpochDay()) >= 0;
+    }
+
+    /**
+     * @return true if this repetition has a termination
+     */
+    public boolean isTerminated() {
+        return lastEpochDay != Long.MAX_VALUE;
+    }
+
+    /**
+     * Tests if an occurrence reaches a given day
+     *
+     * @see EpochDays#repeatsOn
+     */
+    boolean repeatsOn(long startDay, long spanInDays, long day) {
+        return EpochDays.repeatsOn(frequency, startDay, spanInDays, lastEpochDay, exceptions, 0, exceptions.length, day);
+    }
+
+    /**
+     * @return the exceptions (not a copy)
+     */
+    long[] exceptionDays() {
+        return exceptions;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ImmutableRepetition r && frequency == r.frequency && lastEpochDay == r.lastEpochDay
+                && occurrences == r.occurrences && Arrays.equals(exceptions, r.exceptions);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * frequency.hashCode() + Long.hashCode(lastEpochDay)) + Long.hashCode(occurrences))
+                + Arrays.hashCode(exceptions);
+    }
+
+    @Override
+    public String toString() {
+        return "ImmutableRepetition[frequency=" + frequency + ", exceptions=" + getExceptions()
+                + ", lastEpochDay=" + lastEpochDay + ", occurrences=" + occurrences + "]";
+    }
+}
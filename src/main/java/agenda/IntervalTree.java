@@ -0,0 +1,295 @@
+package agenda;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Description : an augmented interval tree over closed {@code long} intervals,
+ * each one carrying an {@code int} identifier.
+ * <p>
+ * The tree is a treap ordered on (lower bound, identifier), every node keeps the
+ * greatest upper bound of its subtree so that an overlap query only visits the
+ * branches that can hold a match : O(log n + k) for k results.
+ */
+class IntervalTree {
+
+    private static final class Node {
+        final long lo;
+        final long hi;
+        final int id;
+        final int priority;
+        long maxHi;
+        Node left;
+        Node right;
+
+        Node(long lo, long hi, int id) {
+            this.lo = lo;
+            this.hi = hi;
+            this.id = id;
+            this.priority = mix(id);
+            this.maxHi = hi;
+        }
+    }
+
+    private static final Comparator<Node> ORDER = IntervalTree::compare;
+
+    private Node root;
+    private int size;
+
+    /**
+     * Intervals waiting for {@link #build(boolean)}
+     */
+    private final List<Node> deferred = new ArrayList<>();
+
+    /**
+     * Adds an interval to this tree
+     *
+     * @param lo the lower bound (inclusive)
+     * @param hi the upper bound (inclusive)
+     * @param id the identifier attached to this interval
+     */
+    void insert(long lo, long hi, int id) {
+        root = insert(root, new Node(lo, hi, id));
+        size++;
+    }
+
+    /**
+     * Adds an interval to this tree at the next {@link #build(boolean)} : queries
+     * do not see it before
+     *
+     * @param lo the lower bound (inclusive)
+     * @param hi the upper bound (inclusive)
+     * @param id the identifier attached to this interval
+     */
+    void defer(long lo, long hi, int id) {
+        deferred.add(new Node(lo, hi, id));
+    }
+
+    /**
+     * Adds the deferred intervals, rebuilding the tree from the sorted intervals in
+     * linear time : the treap is a Cartesian tree of the intervals on their priorities
+     *
+     * @param parallel true to sort the intervals in parallel, in the current ForkJoinPool
+     */
+    void build(boolean parallel) {
+        if (deferred.isEmpty()) {
+            return;
+        }
+        Node[] added = deferred.toArray(new Node[0]);
+        deferred.clear();
+        if (parallel) {
+            Arrays.parallelSort(added, ORDER);
+        } else {
+            Arrays.sort(added, ORDER);
+        }
+        // Merge with the intervals already in the tree, which are sorted
+        Node[] existing = new Node[size];
+        collect(root, existing, 0);
+        Node[] nodes = new Node[existing.length + added.length];
+        for (int i = 0, a = 0, e = 0; i < nodes.length; i++) {
+            nodes[i] = e == existing.length || a < added.length && compare(added[a], existing[e]) < 0
+                    ? added[a++] : existing[e++];
+        }
+        // Each node becomes the right child of the last node with a greater
+        // priority, and takes the smaller ones it passes as its left subtree
+        Node[] stack = new Node[nodes.length];
+        int top = -1;
+        for (Node n : nodes) {
+            n.left = null;
+            n.right = null;
+            Node last = null;
+            while (top >= 0 && stack[top].priority < n.priority) {
+                last = stack[top--];
+            }
+            n.left = last;
+            if (top >= 0) {
+                stack[top].right = n;
+            }
+            stack[++top] = n;
+        }
+        root = stack[0];
+        updateAll(root);
+        size = nodes.length;
+    }
+
+    /**
+     * Removes an interval from this tree
+     *
+     * @param lo the lower bound of the interval
+     * @param id the identifier attached to the interval
+     * @return true if the tree held this interval
+     */
+    boolean remove(long lo, int id) {
+        int before = size;
+        root = remove(root, lo, id);
+        return size < before;
+    }
+
+    /**
+     * Removes every interval from this tree
+     */
+    void clear() {
+        root = null;
+        size = 0;
+        deferred.clear();
+    }
+
+    /**
+     * Reports every interval that overlaps [lo, hi]
+     *
+     * @param lo the lower bound of the query (inclusive)
+     * @param hi the upper bound of the query (inclusive)
+     * @param out receives the identifier of each overlapping interval
+     */
+    void query(long lo, long hi, IntConsumer out) {
+        query(root, lo, hi, out);
+    }
+
+    /**
+     * @return the number of intervals in this tree
+     */
+    int size() {
+        return size;
+    }
+
+    private static Node insert(Node t, Node n) {
+        if (t == null) {
+            return n;
+        }
+        if (compare(n, t) < 0) {
+            t.left = insert(t.left, n);
+            if (t.left.priority > t.priority) {
+                t = rotateRight(t);
+            }
+        } else {
+            t.right = insert(t.right, n);
+            if (t.right.priority > t.priority) {
+                t = rotateLeft(t);
+            }
+        }
+        update(t);
+        return t;
+    }
+
+    private Node remove(Node t, long lo, int id) {
+        if (t == null) {
+            return null;
+        }
+        int c = Long.compare(lo, t.lo);
+        if (c == 0) {
+            c = Integer.compare(id, t.id);
+        }
+        if (c < 0) {
+            t.left = remove(t.left, lo, id);
+        } else if (c > 0) {
+            t.right = remove(t.right, lo, id);
+        } else {
+            size--;
+            return merge(t.left, t.right);
+        }
+        update(t);
+        return t;
+    }
+
+    /**
+     * Merges two treaps, every interval of a being before those of b
+     */
+    private static Node merge(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    private static void query(Node t, long lo, long hi, IntConsumer out) {
+        while (t != null && t.maxHi >= lo) {
+            query(t.left, lo, hi, out);
+            if (t.lo > hi) {
+                return;
+            }
+            if (t.hi >= lo) {
+                out.accept(t.id);
+            }
+            t = t.right;
+        }
+    }
+
+    /**
+     * Stores the nodes of a subtree in order, from a given index
+     *
+     * @return the index after the last node stored
+     */
+    private static int collect(Node t, Node[] out, int index) {
+        while (t != null) {
+            index = collect(t.left, out, index);
+            out[index++] = t;
+            t = t.right;
+        }
+        return index;
+    }
+
+    private static void updateAll(Node t) {
+        if (t != null) {
+            updateAll(t.left);
+            updateAll(t.right);
+            update(t);
+        }
+    }
+
+    private static Node rotateRight(Node t) {
+        Node l = t.left;
+        t.left = l.right;
+        l.right = t;
+        update(t);
+        update(l);
+        return l;
+    }
+
+    private static Node rotateLeft(Node t) {
+        Node r = t.right;
+        t.right = r.left;
+        r.left = t;
+        update(t);
+        update(r);
+        return r;
+    }
+
+    private static void update(Node t) {
+        long max = t.hi;
+        if (t.left != null && t.left.maxHi > max) {
+            max = t.left.maxHi;
+        }
+        if (t.right != null && t.right.maxHi > max) {
+            max = t.right.maxHi;
+        }
+        t.maxHi = max;
+    }
+
+    private static int compare(Node a, Node b) {
+        int c = Long.compare(a.lo, b.lo);
+        return c != 0 ? c : Integer.compare(a.id, b.id);
+    }
+
+    // Deterministic pseudo-random priority (murmur3 finalizer)
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+}
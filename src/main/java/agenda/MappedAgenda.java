@@ -0,0 +1,345 @@
+package agenda;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Description : a read-only agenda backed by a memory-mapped file, queryable as
+ * soon as it is opened. Events are decoded from the file when a query returns
+ * them.
+ * <p>
+ * The file holds the columns of a {@link ColumnarAgenda}, little-endian :
+ * <UL>
+ * <LI>a header of 32 bytes : magic number, version, number of events n,
+ * number of exceptions m, number of distinct titles t, size of the titles
+ * in bytes, 8 reserved bytes</LI>
+ * <LI>long[n] starts (epoch seconds), long[n] durations (seconds), long[n]
+ * last days (epoch days), long[m] exceptions (epoch days)</LI>
+ * <LI>int[n] title identifiers (-1 for no title), int[n + 1] offsets of the
+ * exceptions of each event, int[t + 1] offsets of each title</LI>
+ * <LI>byte[n] frequency codes, then the titles in UTF-8</LI>
+ * </UL>
+ * A file is limited to 2 GB, about 50 million events.
+ */
+public final class MappedAgenda {
+
+    static final int MAGIC = 0x41474E44;
+
+    static final int VERSION = 1;
+
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private static final int HEADER_SIZE = 32;
+
+    private final int size;
+    private final LongBuffer startSeconds;
+    private final LongBuffer durationSeconds;
+    private final LongBuffer lastDays;
+    private final LongBuffer exceptionPool;
+    private final IntBuffer titleIds;
+    private final IntBuffer exceptionOffsets;
+    private final IntBuffer titleOffsets;
+    private final ByteBuffer frequencies;
+    private final ByteBuffer titleBytes;
+
+    /**
+     * Titles decoded so far, by identifier
+     */
+    private final String[] titles;
+
+    private int parallelThreshold = ColumnarAgenda.DEFAULT_PARALLEL_THRESHOLD;
+
+    private MappedAgenda(ByteBuffer file) throws IOException {
+        if (file.capacity() < HEADER_SIZE || file.getInt(0) != MAGIC) {
+            throw new IOException("Not an agenda file");
+        }
+        if (file.getInt(4) != VERSION) {
+            throw new IOException("Unsupported agenda file version " + file.getInt(4));
+        }
+        size = file.getInt(8);
+        int exceptionCount = file.getInt(12);
+        int titleCount = file.getInt(16);
+        int titleByteCount = file.getInt(20);
+        long expected = HEADER_SIZE + (3L * size + exceptionCount) * Long.BYTES
+                + (2L * size + titleCount + 2) * Integer.BYTES + size + titleByteCount;
+        if (file.capacity() != expected) {
+            throw new IOException("Truncated agenda file : " + file.capacity() + " bytes instead of " + expected);
+        }
+        int offset = HEADER_SIZE;
+        startSeconds = file.slice(offset, size * Long.BYTES).order(BYTE_ORDER).asLongBuffer();
+        offset += size * Long.BYTES;
+        durationSeconds = file.slice(offset, size * Long.BYTES).order(BYTE_ORDER).asLongBuffer();
+        offset += size * Long.BYTES;
+        lastDays = file.slice(offset, size * Long.BYTES).order(BYTE_ORDER).asLongBuffer();
+        offset += size * Long.BYTES;
+        exceptionPool = file.slice(offset, exceptionCount * Long.BYTES).order(BYTE_ORDER).asLongBuffer();
+        offset += exceptionCount * Long.BYTES;
+        titleIds = file.slice(offset, size * Integer.BYTES).order(BYTE_ORDER).asIntBuffer();
+        offset += size * Integer.BYTES;
+        exceptionOffsets = file.slice(offset, (size + 1) * Integer.BYTES).order(BYTE_ORDER).asIntBuffer();
+        offset += (size + 1) * Integer.BYTES;
+        titleOffsets = file.slice(offset, (titleCount + 1) * Integer.BYTES).order(BYTE_ORDER).asIntBuffer();
+        offset += (titleCount + 1) * Integer.BYTES;
+        frequencies = file.slice(offset, size);
+        offset += size;
+        titleBytes = file.slice(offset, titleByteCount);
+        titles = new String[titleCount];
+    }
+
+    /**
+     * Writes events to a file, replacing it
+     *
+     * @param events the events to write, fully defined
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Iterable<Event> events, Path file) throws IOException {
+        ColumnarAgenda columns = new ColumnarAgenda();
+        events.forEach(columns::addEvent);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            columns.write(channel);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Opens an agenda file by mapping it in memory : nothing is read before the
+     * first query
+     *
+     * @param file a file written by {@link #write(Iterable, Path)}
+     * @return the agenda held by this file
+     * @throws IOException if the file cannot be read or is not an agenda file
+     */
+    public static MappedAgenda open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Agenda file too large : " + channel.size() + " bytes");
+            }
+            // The mapping outlives the channel
+            return new MappedAgenda(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(BYTE_ORDER));
+        }
+    }
+
+    /**
+     * @return the number of events in this agenda
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Decodes an event of this agenda
+     *
+     * @param position the position of the event, in the order they were written
+     * @return the event at this position
+     */
+    public Event getEvent(int position) {
+        return event(position, new long[exceptionCount(position)]);
+    }
+
+    /**
+     * Computes the events that occur on a given day
+     *
+     * @param day the day to test
+     * @return a list of events that occur on that day, in the order they were written
+     */
+    public List<Event> eventsInDay(LocalDate day) {
+        return eventsInDay(day, null);
+    }
+
+    /**
+     * Computes the events that occur on a given day, scanning chunks of the file
+     * in parallel once it holds at least {@link #setParallelThreshold(int) a
+     * threshold} of events
+     *
+     * @param day the day to test
+     * @param pool the pool scanning the chunks, null for a sequential scan
+     * @return a list of events that occur on that day, in the order they were written
+     */
+    public List<Event> eventsInDay(LocalDate day, ForkJoinPool pool) {
+        long epochDay = day.toEpochDay();
+        return ChunkedScan.scan(size, parallelThreshold, pool, (from, to, l) -> {
+            long[] exceptions = new long[16];
+            for (int i = from; i < to; i++) {
+                exceptions = exceptions(i, exceptions);
+                if (ColumnarAgenda.isInDay(startSeconds.get(i), durationSeconds.get(i), frequencies.get(i),
+                        lastDays.get(i), exceptions, 0, exceptionCount(i), epochDay)) {
+                    l.add(event(i, exceptions));
+                }
+            }
+        });
+    }
+
+    /**
+     * Trouver les événements de l'agenda en fonction de leur titre
+     * @param title le titre à rechercher
+     * @return les événements qui ont le même titre
+     */
+    public List<Event> findByTitle(String title) {
+        return findByTitle(title, null);
+    }
+
+    /**
+     * Trouver les événements de l'agenda en fonction de leur titre, en parcourant
+     * le fichier par morceaux en parallèle au-delà du seuil
+     * @param title le titre à rechercher
+     * @param pool le pool qui parcourt les morceaux, null pour un parcours séquentiel
+     * @return les événements qui ont le même titre, dans l'ordre d'écriture
+     * @see #setParallelThreshold(int)
+     */
+    public List<Event> findByTitle(String title, ForkJoinPool pool) {
+        int id = titleId(title);
+        if (id == Integer.MIN_VALUE) {
+            return new ArrayList<>();
+        }
+        return ChunkedScan.scan(size, parallelThreshold, pool, (from, to, l) -> {
+            for (int i = from; i < to; i++) {
+                if (titleIds.get(i) == id) {
+                    l.add(getEvent(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets the number of events below which the queries given a pool stay
+     * sequential
+     *
+     * @param threshold a number of events
+     * @see ColumnarAgenda#setParallelThreshold(int)
+     */
+    public void setParallelThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Negative threshold : " + threshold);
+        }
+        this.parallelThreshold = threshold;
+    }
+
+    /**
+     * Déterminer s’il y a de la place dans l'agenda pour un événement (aucun autre
+     * événement au même moment), en tenant compte des répétitions
+     * @param e L'événement à tester
+     * @return vrai s’il y a de la place dans l'agenda pour cet événement
+     */
+    public boolean isFreeFor(Event e) {
+        if (!e.hasRepetition()) {
+            return isFreeFor(e.getStart(), e.getDuration());
+        }
+        long firstDay = e.startEpochDay();
+        long lastDay = e.getRepetition().lastEpochDay();
+        long lastReached = lastDay == Long.MAX_VALUE ? lastDay : lastDay + e.spanInDays() + 1;
+        long[] exceptions = new long[16];
+        for (int i = 0; i < size; i++) {
+            // Only the events active while e repeats can overlap it
+            long start = startSeconds.get(i);
+            long duration = durationSeconds.get(i);
+            long last = lastDays.get(i);
+            if (!ColumnarAgenda.mayReach(start, duration, last, firstDay, lastReached)) {
+                continue;
+            }
+            exceptions = exceptions(i, exceptions);
+            if (ColumnarAgenda.overlaps(e, start, duration, frequencies.get(i), last,
+                    exceptions, 0, exceptionCount(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Déterminer s’il y a de la place dans l'agenda sur un créneau (aucun autre
+     * événement au même moment, y compris les occurrences des événements répétitifs),
+     * à la seconde près
+     * @param start le début du créneau
+     * @param duration la durée du créneau
+     * @return vrai s’il y a de la place dans l'agenda sur ce créneau
+     */
+    public boolean isFreeFor(LocalDateTime start, Duration duration) {
+        long from = start.toEpochSecond(ZoneOffset.UTC);
+        long to = from + duration.getSeconds();
+        long[] exceptions = new long[16];
+        for (int i = 0; i < size; i++) {
+            exceptions = exceptions(i, exceptions);
+            if (ColumnarAgenda.overlaps(startSeconds.get(i), durationSeconds.get(i), frequencies.get(i),
+                    lastDays.get(i), exceptions, 0, exceptionCount(i), from, to)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Event event(int i, long[] exceptions) {
+        exceptions = exceptions(i, exceptions);
+        int id = titleIds.get(i);
+        return ColumnarAgenda.event(id < 0 ? null : title(id), startSeconds.get(i), durationSeconds.get(i),
+                frequencies.get(i), lastDays.get(i), exceptions, 0, exceptionCount(i));
+    }
+
+    private int exceptionCount(int i) {
+        return exceptionOffsets.get(i + 1) - exceptionOffsets.get(i);
+    }
+
+    /**
+     * Copies the exceptions of an event at the start of an array, which is
+     * replaced by a larger one if needed
+     */
+    private long[] exceptions(int i, long[] exceptions) {
+        int count = exceptionCount(i);
+        if (count > exceptions.length) {
+            exceptions = new long[Math.max(count, exceptions.length * 2)];
+        }
+        exceptionPool.get(exceptionOffsets.get(i), exceptions, 0, count);
+        return exceptions;
+    }
+
+    private String title(int id) {
+        // Parallel scans may decode a title twice : strings are safely shared
+        String title = titles[id];
+        if (title == null) {
+            int from = titleOffsets.get(id);
+            byte[] bytes = new byte[titleOffsets.get(id + 1) - from];
+            titleBytes.get(from, bytes);
+            title = new String(bytes, StandardCharsets.UTF_8);
+            titles[id] = title;
+        }
+        return title;
+    }
+
+    /**
+     * Finds the identifier of a title, -1 for no title, Integer.MIN_VALUE if no
+     * event has this title
+     */
+    private int titleId(String title) {
+        if (title == null) {
+            return -1;
+        }
+        byte[] wanted = title.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[wanted.length];
+        for (int id = 0; id < titles.length; id++) {
+            int from = titleOffsets.get(id);
+            if (titleOffsets.get(id + 1) - from == wanted.length) {
+                titleBytes.get(from, bytes);
+                if (Arrays.equals(bytes, wanted)) {
+                    return id;
+                }
+            }
+        }
+        return Integer.MIN_VALUE;
+    }
+}
@@ -0,0 +1,20 @@
+package agenda;
+
+import java.time.LocalDateTime;
+
+/**
+ * Description : one occurrence of an event, i.e. the event and the actual start
+ * time of this occurrence
+ *
+ * @param event the event that occurs
+ * @param start the start time of this occurrence
+ */
+public record Occurrence(Event event, LocalDateTime start) {
+
+    /**
+     * @return the end time of this occurrence
+     */
+    public LocalDateTime end() {
+        return start.plus(event.getDuration());
+    }
+}
@@ -0,0 +1,451 @@
+package agenda;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Description : calls back a given time before each occurrence of events, with
+ * no polling.
+ * <p>
+ * A delay queue (a min-heap ordered by firing time) holds the next reminder of
+ * each scheduled event only : once a reminder fires, the event is re-armed with
+ * its following occurrence, up to its termination. An occurrence that is no
+ * longer one when its reminder fires (an exception, a moved start) is skipped,
+ * and the event is re-armed with its first occurrence whose reminder is not
+ * past. The events of an agenda scheduled as a whole are re-armed as soon as
+ * the agenda sees them change.
+ * <p>
+ * Times are read from a {@link Clock}, in its time zone : tests drive the time
+ * with their own clock and {@link #dispatchDue()}, without sleeping. Once
+ * {@link #start() started}, a thread waits for the next reminder and dispatches
+ * the callbacks to an executor, a new virtual thread per callback by default.
+ * A failure of the clock or of an event does not stop this thread : it is
+ * reported to {@link #setFailureHandler(Consumer) a handler}, then the thread
+ * goes on.
+ */
+public class ReminderEngine implements AutoCloseable {
+
+    /**
+     * Longest wait before reading the clock again, so that a change of the
+     * system time is noticed
+     */
+    private static final Duration MAX_WAIT = Duration.ofMinutes(1);
+
+    /**
+     * Wait after a failure, so that a lasting one does not keep the thread busy
+     */
+    private static final Duration RETRY_WAIT = Duration.ofSeconds(1);
+
+    private final Clock clock;
+
+    private final Executor dispatcher;
+
+    /**
+     * The dispatcher, if this engine created it and must shut it down
+     */
+    private final ExecutorService ownDispatcher;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signalled when the first reminder changes or the engine is closed
+     */
+    private final Condition changed = lock.newCondition();
+
+    /**
+     * The next reminder of each scheduled event, guarded by the lock
+     */
+    private final PriorityQueue<Reminder> queue = new PriorityQueue<>();
+
+    /**
+     * Orders reminders firing at the same time, guarded by the lock
+     */
+    private long sequence;
+
+    /**
+     * The agendas whose events are scheduled as they are added, guarded by the lock
+     */
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
+    private Thread driver;
+
+    private boolean closed;
+
+    /**
+     * Told of the failures of the thread dispatching the reminders, null for the
+     * uncaught exception handler of this thread
+     */
+    private volatile Consumer<RuntimeException> failureHandler;
+
+    /**
+     * An engine reading the system clock, running each callback on a new virtual
+     * thread
+     */
+    public ReminderEngine() {
+        this.clock = Clock.systemDefaultZone();
+        this.ownDispatcher = Executors.newVirtualThreadPerTaskExecutor();
+        this.dispatcher = ownDispatcher;
+    }
+
+    /**
+     * @param clock the clock giving the current time, in its time zone
+     * @param dispatcher the executor running the callbacks
+     */
+    public ReminderEngine(Clock clock, Executor dispatcher) {
+        this.clock = clock;
+        this.dispatcher = dispatcher;
+        this.ownDispatcher = null;
+    }
+
+    /**
+     * A reminder of one occurrence of an event
+     */
+    private record Reminder(Event event, Duration lead, Consumer<Occurrence> callback,
+                            LocalDateTime occurrence, LocalDateTime fireAt, long sequence)
+            implements Comparable<Reminder> {
+
+        @Override
+        public int compareTo(Reminder other) {
+            int c = fireAt.compareTo(other.fireAt);
+            return c != 0 ? c : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Calls back before each occurrence of an event, from the first one whose
+     * reminder is not past
+     *
+     * @param e the event
+     * @param lead how long before each occurrence to call back
+     * @param callback called with each occurrence
+     * @return false if the event has no occurrence left to remind
+     */
+    public boolean schedule(Event e, Duration lead, Consumer<Occurrence> callback) {
+        LocalDateTime first = e.nextOccurrenceFrom(LocalDateTime.now(clock).plus(lead));
+        lock.lock();
+        try {
+            return arm(e, lead, callback, first);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Calls back before each occurrence of the events of an agenda : the events
+     * it holds now, then the events added to it, until they are removed from it
+     * or {@link #cancelAll(Agenda)} is called. The agenda tells this engine of
+     * its additions and removals in the thread that makes them.
+     *
+     * @param agenda the agenda
+     * @param lead how long before each occurrence to call back
+     * @param callback called with each occurrence
+     * @see #schedule(Event, Duration, Consumer)
+     */
+    public void scheduleAll(Agenda agenda, Duration lead, Consumer<Occurrence> callback) {
+        Subscription subscription = new Subscription(agenda, lead, callback);
+        for (Event e : agenda.getEvents()) {
+            schedule(e, lead, callback);
+        }
+        agenda.addObserver(subscription);
+        lock.lock();
+        try {
+            subscriptions.add(subscription);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops calling back before the occurrences of the events of an agenda
+     * scheduled by {@link #scheduleAll(Agenda, Duration, Consumer)}, and stops
+     * scheduling the events added to it
+     *
+     * @param agenda the agenda
+     * @return true if the agenda was scheduled
+     */
+    public boolean cancelAll(Agenda agenda) {
+        List<Subscription> cancelled = new ArrayList<>();
+        lock.lock();
+        try {
+            subscriptions.removeIf(s -> s.agenda == agenda && cancelled.add(s));
+        } finally {
+            lock.unlock();
+        }
+        for (Subscription subscription : cancelled) {
+            agenda.removeObserver(subscription);
+            for (Event e : agenda.getEvents()) {
+                cancel(e, subscription.callback);
+            }
+        }
+        return !cancelled.isEmpty();
+    }
+
+    /**
+     * Stops calling back before the occurrences of an event
+     *
+     * @param e the event
+     * @return true if the event was scheduled
+     */
+    public boolean cancel(Event e) {
+        lock.lock();
+        try {
+            return queue.removeIf(r -> r.event == e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops calling back one callback before the occurrences of an event
+     */
+    private void cancel(Event e, Consumer<Occurrence> callback) {
+        lock.lock();
+        try {
+            queue.removeIf(r -> r.event == e && r.callback == callback);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of reminders armed, one per scheduled event
+     */
+    public int pending() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the time of the next reminder, null if there is none
+     */
+    public LocalDateTime nextReminder() {
+        lock.lock();
+        try {
+            Reminder first = queue.peek();
+            return first == null ? null : first.fireAt;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the handler told of the failures of the thread dispatching the
+     * reminders, which goes on after each one
+     *
+     * @param handler the handler, null for the uncaught exception handler of the thread
+     */
+    public void setFailureHandler(Consumer<RuntimeException> handler) {
+        this.failureHandler = handler;
+    }
+
+    /**
+     * Dispatches the reminders that are due at the current time of the clock,
+     * in order, and re-arms their events. The occurrences that a change of their
+     * event moved before the current time plus the lead are not reminded. An
+     * event whose next occurrence cannot be computed is no longer reminded.
+     *
+     * @return the number of callbacks dispatched
+     * @throws RuntimeException the first failure of an event, once the reminders
+     * of the others are dispatched
+     */
+    public int dispatchDue() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        List<Reminder> due = new ArrayList<>();
+        RuntimeException failure = null;
+        lock.lock();
+        try {
+            while (!queue.isEmpty() && !queue.peek().fireAt.isAfter(now)) {
+                Reminder r = queue.poll();
+                try {
+                    // The event may have changed since it was armed
+                    if (r.occurrence.equals(r.event.nextOccurrenceFrom(r.occurrence))) {
+                        due.add(r);
+                        arm(r.event, r.lead, r.callback, r.event.nextOccurrenceAfter(r.occurrence));
+                    } else {
+                        LocalDateTime from = now.plus(r.lead);
+                        arm(r.event, r.lead, r.callback,
+                                r.event.nextOccurrenceFrom(from.isAfter(r.occurrence) ? from : r.occurrence));
+                    }
+                } catch (RuntimeException ex) {
+                    if (failure == null) {
+                        failure = ex;
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Reminder r : due) {
+            Occurrence occurrence = new Occurrence(r.event, r.occurrence);
+            dispatcher.execute(() -> r.callback.accept(occurrence));
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return due.size();
+    }
+
+    /**
+     * Starts the thread that dispatches the reminders when they are due
+     */
+    public void start() {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Reminder engine closed");
+            }
+            if (driver == null) {
+                driver = Thread.ofVirtual().name("reminders").start(this::drive);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops dispatching the reminders. The callbacks already dispatched still run.
+     */
+    @Override
+    public void close() {
+        Thread stopped;
+        lock.lock();
+        try {
+            closed = true;
+            stopped = driver;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (stopped != null) {
+            try {
+                stopped.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (ownDispatcher != null) {
+            ownDispatcher.shutdown();
+        }
+    }
+
+    /**
+     * Arms the reminder of an occurrence, the lock being held
+     *
+     * @return false if there is no occurrence
+     */
+    private boolean arm(Event e, Duration lead, Consumer<Occurrence> callback, LocalDateTime occurrence) {
+        if (occurrence == null) {
+            return false;
+        }
+        Reminder r = new Reminder(e, lead, callback, occurrence, occurrence.minus(lead), sequence++);
+        queue.add(r);
+        if (queue.peek() == r) {
+            changed.signalAll();
+        }
+        return true;
+    }
+
+    /**
+     * Waits for the first reminder, dispatches it, and so on until closed
+     */
+    private void drive() {
+        lock.lock();
+        try {
+            while (!closed) {
+                try {
+                    await();
+                } catch (RuntimeException ex) {
+                    report(ex);
+                    changed.await(RETRY_WAIT.toMillis(), TimeUnit.MILLISECONDS);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the first reminder, at most {@link #MAX_WAIT}, and dispatches
+     * the reminders due, the lock being held
+     */
+    private void await() throws InterruptedException {
+        Reminder first = queue.peek();
+        if (first == null) {
+            changed.await();
+            return;
+        }
+        Duration wait = Duration.between(LocalDateTime.now(clock), first.fireAt);
+        if (wait.isNegative() || wait.isZero()) {
+            lock.unlock();
+            try {
+                dispatchDue();
+            } finally {
+                lock.lock();
+            }
+        } else {
+            // A reminder years ahead would overflow the milliseconds
+            Duration bounded = wait.compareTo(MAX_WAIT) > 0 ? MAX_WAIT : wait;
+            changed.await(bounded.toMillis() + 1, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Schedules the events added to an agenda, and cancels those removed from it
+     */
+    private final class Subscription implements Agenda.Observer {
+
+        private final Agenda agenda;
+
+        private final Duration lead;
+
+        private final Consumer<Occurrence> callback;
+
+        Subscription(Agenda agenda, Duration lead, Consumer<Occurrence> callback) {
+            this.agenda = agenda;
+            this.lead = lead;
+            this.callback = callback;
+        }
+
+        @Override
+        public void added(Event e) {
+            schedule(e, lead, callback);
+        }
+
+        @Override
+        public void removed(Event e) {
+            cancel(e, callback);
+        }
+
+        @Override
+        public void changed(Event e) {
+            cancel(e, callback);
+            schedule(e, lead, callback);
+        }
+    }
+
+    private void report(RuntimeException failure) {
+        Consumer<RuntimeException> handler = failureHandler;
+        if (handler != null) {
+            handler.accept(failure);
+        } else {
+            Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), failure);
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package agenda;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Repetition {
@@ -21,9 +21,25 @@ public class Repetition {
      * </UL>
      */
     private final ChronoUnit myFrequency;
-    private final List<LocalDate> exceptions = new ArrayList<>();
+
+    /**
+     * The exceptions, as sorted and distinct epoch days in exceptions[0..exceptionCount[
+     */
+    private long[] exceptions = new long[0];
+    private int exceptionCount;
     private Termination termination;
 
+    /**
+     * The termination date as an epoch day, Long.MAX_VALUE if it repeats forever
+     */
+    private long lastEpochDay = Long.MAX_VALUE;
+
+    /**
+     * The event repeated, whose listener is notified of the changes of this
+     * repetition, null once the event has another repetition
+     */
+    private Event event;
+
     public Repetition(ChronoUnit myFrequency) {
         this.myFrequency = myFrequency;
     }
@@ -34,12 +50,70 @@ public class Repetition {
      */
 
     public boolean isException(LocalDate date) {
-        return exceptions.contains(date);
+        return isException(date.toEpochDay());
+    }
+
+    /**
+     * @param epochDay a day, as a number of days since 1970-01-01
+     * @return true if the event must not repeat on that day
+     * @see LocalDate#toEpochDay()
+     */
+    public boolean isException(long epochDay) {
+        return Arrays.binarySearch(exceptions, 0, exceptionCount, epochDay) >= 0;
     }
 
     public void addException(LocalDate date) {
-        // TODO : implémenter cette méthode
-        exceptions.add(date);    
+        long epochDay = date.toEpochDay();
+        int index = Arrays.binarySearch(exceptions, 0, exceptionCount, epochDay);
+        if (index >= 0) {
+            return;
+        }
+        Event.ChangeListener l = listener();
+        if (l != null) {
+            l.beforeChange(event);
+        }
+        try {
+            insertException(-index - 1, epochDay);
+        } finally {
+            if (l != null) {
+                l.afterChange(event);
+            }
+        }
+    }
+
+    private void insertException(int insertion, long epochDay) {
+        if (exceptionCount == exceptions.length) {
+            exceptions = Arrays.copyOf(exceptions, Math.max(4, exceptionCount * 2));
+        }
+        System.arraycopy(exceptions, insertion, exceptions, insertion + 1, exceptionCount - insertion);
+        exceptions[insertion] = epochDay;
+        exceptionCount++;
+    }
+
+    /**
+     * @return the exceptions, sorted
+     */
+    public List<LocalDate> getExceptions() {
+        List<LocalDate> l = new ArrayList<>(exceptionCount);
+        for (int i = 0; i < exceptionCount; i++) {
+            l.add(LocalDate.ofEpochDay(exceptions[i]));
+        }
+        return l;
+    }
+
+    /**
+     * @return the exceptions as sorted epoch days, in the first
+     * {@link #getExceptionCount()} cells of the array (not a copy)
+     */
+    long[] exceptionDays() {
+        return exceptions;
+    }
+
+    /**
+     * @return the number of distinct exceptions
+     */
+    public int getExceptionCount() {
+        return exceptionCount;
     }
 
     /**
@@ -47,46 +121,53 @@ public class Repetition {
      * @param termination la terminaison de la répétition
      */
     public void setTermination(Termination termination) {
-        // TODO : implémenter cette méthode
-        this.termination = termination;
+        Event.ChangeListener l = listener();
+        if (l != null) {
+            l.beforeChange(event);
+        }
+        try {
+            this.termination = termination;
+            this.lastEpochDay = termination == null ? Long.MAX_VALUE : termination.terminationDateInclusive().toEpochDay();
+        } finally {
+            if (l != null) {
+                l.afterChange(event);
+            }
+        }
     }
     public Termination getTermination() {
         return termination;
     }
 
+    /**
+     * Moves the termination to a new start of the event, without notifying its
+     * listener : a termination given as a number of occurrences keeps that
+     * number, one given as a date keeps its date
+     *
+     * @param start the new start day of the event
+     */
+    void restart(LocalDate start) {
+        if (termination == null) {
+            return;
+        }
+        termination = termination.byCount()
+                ? new Termination(start, myFrequency, termination.numberOfOccurrences())
+                : new Termination(start, myFrequency, termination.terminationDateInclusive());
+        lastEpochDay = termination.terminationDateInclusive().toEpochDay();
+    }
 
+    /**
+     * @return the last day this event may repeat on, as an epoch day
+     * (Long.MAX_VALUE if it repeats forever)
+     */
+    long lastEpochDay() {
+        return lastEpochDay;
+    }
 
+    void setEvent(Event event) {
+        this.event = event;
+    }
 
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-    
-
+    private Event.ChangeListener listener() {
+        return event == null ? null : event.getChangeListener();
+    }
 }
@@ -9,6 +9,11 @@ public class Termination {
     private final LocalDate terminationDateInclusive;
     private final long numberOfOccurrences;
 
+    /**
+     * True if this termination was given as a number of occurrences
+     */
+    private final boolean byCount;
+
     public LocalDate terminationDateInclusive() {
         // TODO : implémenter cette méthode
         return terminationDateInclusive;    }
@@ -18,6 +23,14 @@ public class Termination {
         return numberOfOccurrences;
     }
 
+    /**
+     * @return true if this termination was given as a number of occurrences,
+     * false if it was given as a date
+     */
+    boolean byCount() {
+        return byCount;
+    }
+
 
     /**
      * Constructs a  termination at a given date
@@ -35,6 +48,7 @@ public class Termination {
         // TODO : implémenter cette méthode
         this.terminationDateInclusive = terminationInclusive;
         this.numberOfOccurrences = 1 + frequency.between(start, terminationInclusive);
+        this.byCount = false;
     }
 
     /**
@@ -52,6 +66,7 @@ public class Termination {
         // TODO : implémenter cette méthode
         this.numberOfOccurrences = numberOfOccurrences;
         this.terminationDateInclusive = start.plus((numberOfOccurrences - 1), frequency);
+        this.byCount = true;
     }
 
 }
@@ -4,6 +4,15 @@ import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -115,6 +124,30 @@ public class AgendaTest {
                 "Aucun événement avec ce titre");
     }
 
+    @Test
+    public void testFindByTitleIgnoreCase() {
+        assertEquals(List.of(fixedTermination, fixedRepetitions), agenda.findByTitleIgnoreCase("FIXED termination Weekly"));
+        assertEquals(0, agenda.findByTitleIgnoreCase("Fixed termination").size());
+    }
+
+    @Test
+    public void testFindByTitlePrefix() {
+        agenda.addEvent(new Event("simple", nov_1_2020_22_30, min_120));
+        assertEquals(List.of(fixedTermination, fixedRepetitions), agenda.findByTitlePrefix("fi"),
+                "Les titres commençant par ce préfixe, sans tenir compte de la casse");
+        assertEquals(2, agenda.findByTitlePrefix("SIMPLE").size());
+        assertEquals(List.of(fixedTermination, fixedRepetitions, neverEnding), agenda.findByTitlePrefix("").subList(0, 3),
+                "Les résultats sont triés par titre");
+        assertEquals(0, agenda.findByTitlePrefix("simplex").size());
+    }
+
+    @Test
+    public void testFindByTitleReturnsACopy() {
+        agenda.findByTitle("Simple event").clear();
+        assertEquals(1, agenda.findByTitle("Simple event").size(),
+                "Modifier le résultat ne modifie pas l'agenda");
+    }
+
     @Test
     public void testIsFreeForNoConflict() {
         LocalDateTime freeTime = LocalDateTime.of(2020, 11, 2, 10, 0);
@@ -136,13 +169,67 @@ public class AgendaTest {
     }
 
     @Test
-    public void testIsFreeForIgnoresRepeatingEvents() {
+    public void testIsFreeForDetectsRepeatingEvents() {
         LocalDateTime nearRepeatEvent = LocalDateTime.of(2020, 11, 8, 22, 30);
         Duration duration = Duration.ofMinutes(60);
         Event event = new Event("Test event", nearRepeatEvent, duration);
 
-        assertTrue(agenda.isFreeFor(event),
-                "Les événements répétitifs sont ignorés dans le calcul de disponibilité");
+        assertFalse(agenda.isFreeFor(event),
+                "Les occurrences des événements répétitifs sont prises en compte");
+        assertFalse(agenda.isFreeFor(LocalDateTime.of(2031, 3, 4, 23, 0), duration),
+                "L'événement quotidien sans fin occupe ce créneau");
+        assertTrue(agenda.isFreeFor(LocalDateTime.of(2031, 3, 4, 12, 0), duration));
+    }
+
+    @Test
+    public void testIsFreeForRepeatingEvent() {
+        Event weekly = new Event("Weekly", LocalDateTime.of(2020, 10, 26, 23, 0), Duration.ofMinutes(30));
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        assertFalse(agenda.isFreeFor(weekly), "Chevauche l'événement quotidien sans fin");
+
+        Agenda newAgenda = new Agenda();
+        newAgenda.addEvent(simple);
+        assertTrue(newAgenda.isFreeFor(weekly));
+        weekly.setTermination(LocalDate.of(2020, 11, 5));
+        Event morning = new Event("Morning", LocalDateTime.of(2020, 11, 3, 9, 0), Duration.ofMinutes(30));
+        morning.setRepetition(ChronoUnit.DAYS);
+        assertTrue(newAgenda.isFreeFor(morning));
+        Event late = new Event("Late", LocalDateTime.of(2020, 10, 30, 23, 0), Duration.ofMinutes(30));
+        late.setRepetition(ChronoUnit.DAYS);
+        assertFalse(newAgenda.isFreeFor(late), "Une occurrence chevauche l'événement simple");
+        late.setTermination(3L);
+        late.addException(LocalDate.of(2020, 11, 1));
+        assertTrue(newAgenda.isFreeFor(late), "L'occurrence qui chevauchait est une exception");
+    }
+
+    @Test
+    public void testIsFreeForTimeSlot() {
+        assertFalse(agenda.isFreeFor(LocalDateTime.of(2020, 11, 2, 0, 0), Duration.ofMinutes(15)),
+                "L'événement simple déborde sur le 2 novembre");
+        assertTrue(agenda.isFreeFor(nov_1_2020_22_30.plus(min_120), Duration.ofHours(10)));
+        assertTrue(agenda.isFreeFor(LocalDateTime.of(2020, 11, 1, 12, 0), Duration.ofHours(10).plusMinutes(30)));
+    }
+
+    @Test
+    public void testAddIfFree() {
+        Event conflict = new Event("Conflict", nov_1_2020_22_30.plusMinutes(30), min_120);
+        Event free = new Event("Free", LocalDateTime.of(2020, 11, 2, 10, 0), min_120);
+        assertFalse(agenda.addIfFree(conflict), "Le créneau est déjà occupé");
+        assertTrue(agenda.findByTitle("Conflict").isEmpty());
+        assertTrue(agenda.addIfFree(free));
+        assertEquals(List.of(free), agenda.findByTitle("Free"));
+        assertFalse(agenda.addIfFree(free), "Le créneau est maintenant occupé");
+    }
+
+    @Test
+    public void testAddAllIfFree() {
+        Event first = new Event("First", LocalDateTime.of(2020, 11, 2, 10, 0), min_120);
+        Event second = new Event("Second", LocalDateTime.of(2020, 11, 2, 11, 0), min_120);
+        Event third = new Event("Third", LocalDateTime.of(2020, 11, 2, 12, 0), min_120);
+        assertFalse(agenda.addAllIfFree(List.of(first, second)), "Les deux événements se chevauchent");
+        assertTrue(agenda.findByTitle("First").isEmpty(), "Aucun événement n'est ajouté");
+        assertTrue(agenda.addAllIfFree(List.of(first, third)));
+        assertEquals(1, agenda.findByTitle("Third").size());
     }
 
     @Test
@@ -215,4 +302,371 @@ public class AgendaTest {
                 "Un événement qui se termine exactement au début d'un autre n'a pas de conflit");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testEventsInDayWithMultiDayEvents() {
+        Agenda newAgenda = new Agenda();
+        Event longEvent = new Event("Long", LocalDateTime.of(2020, 11, 1, 20, 0), Duration.ofHours(30));
+        Event before = new Event("Before", LocalDateTime.of(2020, 10, 31, 10, 0), Duration.ofMinutes(60));
+        Event after = new Event("After", LocalDateTime.of(2020, 11, 3, 10, 0), Duration.ofMinutes(60));
+        newAgenda.addEvent(longEvent);
+        newAgenda.addEvent(before);
+        newAgenda.addEvent(after);
+        newAgenda.addEvent(neverEnding);
+
+        assertEquals(List.of(before), newAgenda.eventsInDay(LocalDate.of(2020, 10, 31)));
+        assertEquals(List.of(longEvent, neverEnding), newAgenda.eventsInDay(nov_1_2020));
+        assertEquals(List.of(longEvent, neverEnding), newAgenda.eventsInDay(LocalDate.of(2020, 11, 2)));
+        assertEquals(List.of(longEvent, after, neverEnding), newAgenda.eventsInDay(LocalDate.of(2020, 11, 3)),
+                "Les événements sont rendus dans l'ordre d'ajout");
+        assertEquals(List.of(neverEnding), newAgenda.eventsInDay(LocalDate.of(2020, 11, 4)));
+    }
+
+    @Test
+    public void testEventsInDaySameResultsAsScan() {
+        List<Event> all = randomEvents(new Random(7), 300);
+        Agenda newAgenda = new Agenda();
+        all.forEach(newAgenda::addEvent);
+        for (LocalDate day = LocalDate.of(2019, 12, 25); day.isBefore(LocalDate.of(2021, 6, 1)); day = day.plusDays(1)) {
+            List<Event> expected = new ArrayList<>();
+            for (Event e : all) {
+                if (e.isInDay(day)) {
+                    expected.add(e);
+                }
+            }
+            assertEquals(expected, newAgenda.eventsInDay(day), "Même résultat qu'un parcours de tous les événements");
+        }
+    }
+
+    @Test
+    public void testRepeatingEventsSpanningDays() {
+        LocalDate nov_2_2020 = nov_1_2020.plusDays(1);
+        assertEquals(List.of(simple, fixedTermination, fixedRepetitions, neverEnding), agenda.eventsInDay(nov_2_2020),
+                "Les occurrences du 1er novembre débordent sur le 2");
+        assertEquals(List.of(neverEnding), agenda.eventsInDay(nov_2_2020.plusDays(1)));
+    }
+
+    @Test
+    public void testEventsBetween() {
+        List<Occurrence> occurrences = agenda.eventsBetween(nov_1_2020, nov_1_2020.plusDays(7)).toList();
+        assertEquals(1 + 2 + 2 + 8, occurrences.size(),
+                "L'événement simple, 2 x 2 occurrences hebdomadaires et 8 occurrences quotidiennes");
+        assertEquals(new Occurrence(simple, nov_1_2020_22_30), occurrences.get(0));
+        assertEquals(new Occurrence(fixedTermination, nov_1_2020_22_30.plusWeeks(1)), occurrences.get(2));
+        assertEquals(nov_1_2020_22_30.plusDays(7), occurrences.get(12).start());
+        assertEquals(nov_1_2020_22_30.plusDays(7).plus(min_120), occurrences.get(12).end());
+    }
+
+    @Test
+    public void testEventsBetweenMatchesEventsInDay() {
+        List<Event> all = randomEvents(new Random(11), 200);
+        Agenda newAgenda = new Agenda();
+        all.forEach(newAgenda::addEvent);
+        LocalDate from = LocalDate.of(2020, 2, 1);
+        LocalDate to = LocalDate.of(2020, 8, 31);
+        Map<LocalDate, Set<Event>> expected = new HashMap<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            expected.put(day, new HashSet<>(newAgenda.eventsInDay(day)));
+        }
+        Map<LocalDate, Set<Event>> actual = new HashMap<>();
+        newAgenda.eventsBetween(from, to).forEach(o -> {
+            LocalDate day = o.start().toLocalDate();
+            LocalDate last = o.end().toLocalDate();
+            for (; !day.isAfter(last); day = day.plusDays(1)) {
+                if (!day.isBefore(from) && !day.isAfter(to)) {
+                    actual.computeIfAbsent(day, d -> new HashSet<>()).add(o.event());
+                }
+            }
+        });
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            assertEquals(expected.get(day), actual.getOrDefault(day, Set.of()),
+                    "eventsBetween et eventsInDay doivent être cohérents le " + day);
+        }
+    }
+
+    @Test
+    public void testAddAllSameAsAddEvent() {
+        List<Event> all = randomEvents(new Random(53), 400);
+        Agenda oneByOne = new Agenda();
+        all.forEach(oneByOne::addEvent);
+        Agenda bulk = new Agenda();
+        bulk.addAll(all.subList(0, 100));
+        bulk.addAll(all.subList(100, 400));
+        Agenda parallel = new Agenda();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallel.addAll(all, pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(all, bulk.getEvents(), "Les événements sont ajoutés dans l'ordre");
+        for (LocalDate day = LocalDate.of(2019, 12, 25); day.isBefore(LocalDate.of(2021, 6, 1)); day = day.plusDays(1)) {
+            assertEquals(oneByOne.eventsInDay(day), bulk.eventsInDay(day), "Mêmes index qu'avec addEvent le " + day);
+            assertEquals(oneByOne.eventsInDay(day), parallel.eventsInDay(day), "Mêmes index en parallèle le " + day);
+        }
+        Random random = new Random(59);
+        for (int i = 0; i < 300; i++) {
+            LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0).plusMinutes(random.nextInt(500 * 24 * 60));
+            Duration duration = Duration.ofMinutes(random.nextInt(300));
+            assertEquals(oneByOne.isFreeFor(start, duration), bulk.isFreeFor(start, duration));
+            assertEquals(oneByOne.isFreeFor(start, duration), parallel.isFreeFor(start, duration));
+        }
+        assertEquals(oneByOne.findByTitlePrefix("event 1"), bulk.findByTitlePrefix("event 1"));
+        assertEquals(oneByOne.findByTitle("Event 7"), parallel.findByTitle("Event 7"));
+    }
+
+    @Test
+    public void testAddAllToALargeAgenda() {
+        agenda.addAll(List.of(new Event("Bulk", nov_1_2020_22_30.plusDays(3), min_120)));
+        assertEquals(1, agenda.findByTitle("Bulk").size(), "Un petit lot est ajouté événement par événement");
+        assertFalse(agenda.isFreeFor(nov_1_2020_22_30.plusDays(3), min_120));
+    }
+
+    @Test
+    public void testRemoveEvent() {
+        Event meeting = new Event("Meeting", LocalDateTime.of(2020, 11, 6, 10, 0), min_120);
+        agenda.addEvent(meeting);
+        assertFalse(agenda.isFreeFor(meeting));
+        assertTrue(agenda.removeEvent(meeting));
+        assertFalse(agenda.removeEvent(meeting), "Un événement n'est retiré qu'une fois");
+        assertTrue(agenda.isFreeFor(meeting), "Le créneau est libéré");
+        assertEquals(List.of(), agenda.findByTitle("Meeting"));
+        assertFalse(agenda.getEvents().contains(meeting));
+        assertFalse(agenda.eventsInDay(meeting.getStart().toLocalDate()).contains(meeting));
+    }
+
+    @Test
+    public void testUpdateEvent() {
+        Event meeting = new Event("Meeting", LocalDateTime.of(2020, 11, 6, 10, 0), min_120);
+        agenda.addEvent(meeting);
+        LocalDateTime moved = LocalDateTime.of(2020, 11, 11, 10, 0);
+        assertTrue(agenda.updateEvent(meeting, e -> e.setStart(moved)));
+        assertTrue(agenda.isFreeFor(LocalDateTime.of(2020, 11, 6, 10, 0), min_120), "L'ancien créneau est libéré");
+        assertFalse(agenda.isFreeFor(moved, min_120), "Le nouveau créneau est occupé");
+        assertTrue(agenda.eventsInDay(moved.toLocalDate()).contains(meeting));
+        agenda.updateEvent(meeting, e -> {
+            e.setRepetition(ChronoUnit.WEEKS);
+            e.setDuration(Duration.ofMinutes(30));
+        });
+        assertTrue(agenda.eventsInDay(moved.toLocalDate().plusWeeks(3)).contains(meeting), "L'événement se répète désormais");
+        assertFalse(agenda.updateEvent(new Event("Other", moved, min_120), e -> e.setStart(nov_1_2020_22_30)));
+    }
+
+    @Test
+    public void testAddingTwiceIsIgnored() {
+        Event meeting = new Event("Meeting", LocalDateTime.of(2020, 11, 6, 10, 0), min_120);
+        int size = agenda.getEvents().size();
+        agenda.addEvent(meeting);
+        agenda.addEvent(meeting);
+        agenda.addAll(List.of(meeting, meeting));
+        assertEquals(size + 1, agenda.getEvents().size());
+        assertEquals(1, agenda.findByTitle("Meeting").size());
+    }
+
+    // Random removals and updates, compared with an agenda built from the remaining events
+    @Test
+    public void testRemoveAndUpdateSameAsRebuild() {
+        Random random = new Random(61);
+        List<Event> all = randomEvents(random, 400);
+        Agenda changed = new Agenda();
+        changed.addAll(all);
+        List<Event> remaining = new ArrayList<>(all);
+        // Enough removals to compact the agenda
+        for (int i = 0; i < 250; i++) {
+            Event e = remaining.remove(random.nextInt(remaining.size()));
+            assertTrue(changed.removeEvent(e));
+        }
+        for (int i = 0; i < 50; i++) {
+            Event e = remaining.get(random.nextInt(remaining.size()));
+            LocalDateTime start = e.getStart().plusMinutes(random.nextInt(20 * 24 * 60) - 10 * 24 * 60);
+            Duration duration = Duration.ofMinutes(random.nextInt(3 * 24 * 60));
+            changed.updateEvent(e, x -> {
+                x.setStart(start);
+                x.setDuration(duration);
+            });
+        }
+        Agenda rebuilt = new Agenda();
+        remaining.forEach(rebuilt::addEvent);
+        assertEquals(remaining, changed.getEvents(), "Les événements restants gardent leur ordre");
+        for (LocalDate day = LocalDate.of(2019, 12, 1); day.isBefore(LocalDate.of(2021, 6, 1)); day = day.plusDays(1)) {
+            assertEquals(rebuilt.eventsInDay(day), changed.eventsInDay(day), "Mêmes événements le " + day);
+        }
+        for (int i = 0; i < 500; i++) {
+            LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0).plusMinutes(random.nextInt(500 * 24 * 60));
+            Duration duration = Duration.ofMinutes(random.nextInt(300));
+            assertEquals(rebuilt.isFreeFor(start, duration), changed.isFreeFor(start, duration),
+                    "Même disponibilité à " + start);
+        }
+        assertEquals(rebuilt.findByTitlePrefix("event 1"), changed.findByTitlePrefix("event 1"));
+    }
+
+    @Test
+    public void testEventsInDaysSameAsEventsInDay() {
+        Agenda random = new Agenda();
+        random.addAll(randomEvents(new Random(67), 400));
+        Random r = new Random(71);
+        List<LocalDate> days = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            days.add(LocalDate.of(2019, 12, 1).plusDays(r.nextInt(600)));
+        }
+        days.add(days.get(0));
+        Map<LocalDate, List<Event>> found = random.eventsInDays(days);
+        assertEquals(days.stream().distinct().sorted().toList(), new ArrayList<>(found.keySet()),
+                "Chaque jour demandé, une seule fois, dans l'ordre chronologique");
+        for (LocalDate day : days) {
+            assertEquals(random.eventsInDay(day), found.get(day), "Mêmes événements que eventsInDay le " + day);
+        }
+        assertEquals(Map.of(), random.eventsInDays(List.of()));
+    }
+
+    @Test
+    public void testDayCacheSameResults() {
+        Agenda cached = new Agenda();
+        cached.setDayCacheCapacity(64);
+        Agenda plain = new Agenda();
+        // The same events, as distinct objects, changed the same way in both agendas
+        List<Event> all = randomEvents(new Random(73), 300);
+        List<Event> copies = randomEvents(new Random(73), 300);
+        cached.addAll(all.subList(0, 200));
+        plain.addAll(copies.subList(0, 200));
+        Random random = new Random(79);
+        LocalDate first = LocalDate.of(2020, 6, 1);
+        for (int i = 0; i < 2000; i++) {
+            LocalDate day = first.plusDays(random.nextInt(100));
+            assertEquals(plain.eventsInDay(day).toString(), cached.eventsInDay(day).toString(),
+                    "Même résultat avec le cache le " + day);
+            switch (random.nextInt(20)) {
+                case 0 -> {
+                    int e = 200 + random.nextInt(100);
+                    cached.addEvent(all.get(e));
+                    plain.addEvent(copies.get(e));
+                }
+                case 1 -> {
+                    int e = random.nextInt(200);
+                    cached.removeEvent(all.get(e));
+                    plain.removeEvent(copies.get(e));
+                }
+                case 2 -> {
+                    int e = random.nextInt(300);
+                    int days = random.nextInt(7) - 3;
+                    cached.updateEvent(all.get(e), x -> x.setStart(x.getStart().plusDays(days)));
+                    plain.updateEvent(copies.get(e), x -> x.setStart(x.getStart().plusDays(days)));
+                }
+                default -> { }
+            }
+        }
+        DayCacheStats stats = cached.dayCacheStats();
+        assertTrue(stats.hits() > stats.misses(), "La plupart des requêtes sont servies par le cache : " + stats);
+        assertTrue(stats.evictions() > 0);
+        assertTrue(stats.invalidations() > 0);
+    }
+
+    @Test
+    public void testDayCacheInvalidatesOnlyTheChangedDays() {
+        agenda.setDayCacheCapacity(100);
+        for (int i = 0; i < 30; i++) {
+            agenda.eventsInDay(nov_1_2020.plusDays(i));
+        }
+        agenda.addEvent(new Event("Meeting", LocalDateTime.of(2020, 11, 6, 10, 0), min_120));
+        assertEquals(1, agenda.dayCacheStats().invalidations(), "Seul le jour de l'événement ajouté est évincé");
+        agenda.updateEvent(fixedTermination, e -> e.addException(nov_1_2020.plusWeeks(2)));
+        assertEquals(3, agenda.dayCacheStats().invalidations(), "Seuls les deux jours de l'occurrence annulée sont évincés");
+        assertFalse(agenda.eventsInDay(nov_1_2020.plusWeeks(2)).contains(fixedTermination));
+        assertEquals(new DayCacheStats(0, 0, 0, 0, 0, 0), new Agenda().dayCacheStats(), "Désactivé par défaut");
+    }
+
+    @Test
+    public void testChangesAfterAddingAreIndexed() {
+        agenda.setDayCacheCapacity(100);
+        LocalDateTime morning = LocalDateTime.of(2020, 11, 6, 10, 0);
+        Event meeting = new Event("Meeting", morning, min_120);
+        agenda.addEvent(meeting);
+        assertTrue(agenda.eventsInDay(morning.toLocalDate()).contains(meeting));
+        assertFalse(agenda.eventsInDay(morning.toLocalDate().plusWeeks(1)).contains(meeting));
+
+        meeting.setRepetition(ChronoUnit.WEEKS);
+        assertTrue(agenda.eventsInDay(morning.toLocalDate().plusWeeks(1)).contains(meeting), "La répétition est indexée");
+        meeting.addException(morning.toLocalDate().plusWeeks(2));
+        assertFalse(agenda.eventsInDay(morning.toLocalDate().plusWeeks(2)).contains(meeting), "L'exception est prise en compte");
+        meeting.getRepetition().addException(morning.toLocalDate().plusWeeks(3));
+        assertFalse(agenda.eventsInDay(morning.toLocalDate().plusWeeks(3)).contains(meeting),
+                "Une exception ajoutée à la répétition est prise en compte");
+        meeting.setTermination(morning.toLocalDate().plusWeeks(4));
+        assertFalse(agenda.eventsInDay(morning.toLocalDate().plusWeeks(5)).contains(meeting), "La terminaison est prise en compte");
+        assertTrue(agenda.isFreeFor(morning.plusWeeks(5), min_120));
+        meeting.setStart(morning.plusHours(2));
+        assertTrue(agenda.isFreeFor(morning, Duration.ofMinutes(30)), "L'ancien créneau est libéré");
+
+        agenda.removeEvent(meeting);
+        meeting.setStart(morning);
+        assertFalse(agenda.eventsInDay(morning.toLocalDate()).contains(meeting), "Un événement retiré n'est plus suivi");
+    }
+
+    @Test
+    public void testOnlyOneAgendaListensToAnEvent() {
+        Agenda other = new Agenda();
+        Event meeting = new Event("Meeting", LocalDateTime.of(2020, 11, 6, 10, 0), min_120);
+        agenda.addEvent(meeting);
+        other.addEvent(meeting);
+        LocalDateTime moved = LocalDateTime.of(2020, 11, 9, 10, 0);
+        other.updateEvent(meeting, e -> e.setStart(moved));
+        assertTrue(agenda.eventsInDay(moved.toLocalDate()).contains(meeting), "Le premier agenda est notifié");
+        assertTrue(other.eventsInDay(moved.toLocalDate()).contains(meeting));
+    }
+
+    @Test
+    public void testUpcoming() {
+        LocalDateTime from = nov_1_2020_22_30.plusDays(1);
+        List<Occurrence> next = agenda.upcoming(from).limit(4).toList();
+        assertEquals(List.of(
+                new Occurrence(neverEnding, from),
+                new Occurrence(neverEnding, from.plusDays(1)),
+                new Occurrence(neverEnding, from.plusDays(2)),
+                new Occurrence(neverEnding, from.plusDays(3))), next);
+        List<Occurrence> week = agenda.upcoming(from).limit(10).toList();
+        assertEquals(List.of(fixedTermination, fixedRepetitions, neverEnding),
+                week.stream().filter(o -> o.start().equals(nov_1_2020_22_30.plusWeeks(1))).map(Occurrence::event).toList(),
+                "Même début : dans l'ordre d'ajout");
+        assertEquals(List.of(), new Agenda().upcoming(from).toList());
+    }
+
+    @Test
+    public void testUpcomingSameAsEventsBetween() {
+        Agenda random = new Agenda();
+        random.addAll(randomEvents(new Random(97), 400));
+        LocalDateTime from = LocalDateTime.of(2020, 6, 15, 12, 0);
+        List<Occurrence> expected = random.eventsBetween(from.toLocalDate(), from.toLocalDate().plusYears(2))
+                .filter(o -> !o.start().isBefore(from))
+                .sorted(Comparator.comparing(Occurrence::start))
+                .limit(500)
+                .toList();
+        List<Occurrence> found = random.upcoming(from).limit(500).toList();
+        assertEquals(expected.stream().map(Occurrence::start).toList(), found.stream().map(Occurrence::start).toList());
+        assertEquals(new HashSet<>(expected), new HashSet<>(found));
+    }
+
+    // Random simple and repeating events, with exceptions and terminations
+    static List<Event> randomEvents(Random random, int count) {
+        ChronoUnit[] frequencies = { null, ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS, ChronoUnit.YEARS };
+        List<Event> all = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0)
+                    .plusDays(random.nextInt(400)).plusMinutes(random.nextInt(24 * 60));
+            Event e = new Event("Event " + i, start, Duration.ofMinutes(random.nextInt(3 * 24 * 60)));
+            ChronoUnit frequency = frequencies[random.nextInt(frequencies.length)];
+            if (frequency != null) {
+                e.setRepetition(frequency);
+                for (int x = random.nextInt(4); x > 0; x--) {
+                    e.addException(start.toLocalDate().plus(random.nextInt(10), frequency));
+                }
+                switch (random.nextInt(3)) {
+                    case 0 -> e.setTermination(start.toLocalDate().plusDays(random.nextInt(300)));
+                    case 1 -> e.setTermination(1 + random.nextInt(20));
+                    default -> { }
+                }
+            }
+            all.add(e);
+        }
+        return all;
+    }
+
+}
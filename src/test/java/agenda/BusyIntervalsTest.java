@@ -0,0 +1,107 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the BusyIntervals class
+ */
+public class BusyIntervalsTest {
+
+    @Test
+    public void testAdjacentIntervalsDoNotOverlap() {
+        BusyIntervals busy = new BusyIntervals();
+        busy.add(10, 20);
+        assertFalse(busy.overlaps(0, 10), "Un créneau qui finit au début d'un autre est libre");
+        assertFalse(busy.overlaps(20, 30), "Un créneau qui commence à la fin d'un autre est libre");
+        assertTrue(busy.overlaps(19, 21));
+        assertTrue(busy.overlaps(12, 15));
+        assertTrue(busy.overlaps(0, 100));
+    }
+
+    @Test
+    public void testMergedIntervals() {
+        BusyIntervals busy = new BusyIntervals();
+        busy.add(50, 60);
+        busy.add(10, 20);
+        busy.add(30, 40);
+        busy.add(15, 55);
+        assertTrue(busy.overlaps(56, 58));
+        assertFalse(busy.overlaps(60, 70));
+        assertFalse(busy.overlaps(0, 10));
+    }
+
+    @Test
+    public void testSameResultsAsLinearScan() {
+        Random random = new Random(3);
+        int n = 500;
+        long[] start = new long[n];
+        long[] end = new long[n];
+        BusyIntervals busy = new BusyIntervals();
+        for (int i = 0; i < n; i++) {
+            start[i] = random.nextInt(10_000);
+            end[i] = start[i] + random.nextInt(30);
+            busy.add(start[i], end[i]);
+        }
+        for (int q = 0; q < 2000; q++) {
+            long qs = random.nextInt(10_100) - 50;
+            long qe = qs + random.nextInt(20);
+            boolean expected = false;
+            for (int i = 0; i < n; i++) {
+                expected |= qs < end[i] && start[i] < qe;
+            }
+            assertEquals(expected, busy.overlaps(qs, qe), "Même résultat qu'un parcours linéaire");
+        }
+    }
+
+    @Test
+    public void testBuildSameResultsAsAdd() {
+        Random random = new Random(5);
+        BusyIntervals added = new BusyIntervals();
+        BusyIntervals built = new BusyIntervals();
+        for (int i = 0; i < 500; i++) {
+            long start = random.nextInt(10_000);
+            long end = start + random.nextInt(30);
+            added.add(start, end);
+            if (i % 3 == 0) {
+                built.add(start, end);
+            } else {
+                built.defer(start, end);
+            }
+        }
+        built.build(false);
+        for (int q = 0; q < 2000; q++) {
+            long qs = random.nextInt(10_100) - 50;
+            long qe = qs + random.nextInt(20);
+            assertEquals(added.overlaps(qs, qe), built.overlaps(qs, qe), "Mêmes blocs qu'avec des ajouts");
+        }
+    }
+
+    @Test
+    public void testBuildFarApartIntervals() {
+        BusyIntervals busy = new BusyIntervals();
+        busy.defer(Long.MAX_VALUE - 10, Long.MAX_VALUE);
+        busy.defer(Long.MIN_VALUE, Long.MIN_VALUE + 10);
+        busy.defer(0, 10);
+        busy.build(false);
+        assertTrue(busy.overlaps(Long.MIN_VALUE + 5, Long.MIN_VALUE + 6));
+        assertTrue(busy.overlaps(5, 6));
+        assertFalse(busy.overlaps(10, 20));
+    }
+
+    @Test
+    public void testRemoveBlock() {
+        BusyIntervals busy = new BusyIntervals();
+        busy.add(10, 20);
+        busy.add(15, 30);
+        busy.add(40, 50);
+        assertEquals(Map.entry(10L, 30L), busy.removeBlock(12), "Le bloc fusionné est retiré en entier");
+        assertFalse(busy.overlaps(10, 30));
+        assertTrue(busy.overlaps(45, 46));
+        assertNull(busy.removeBlock(5));
+    }
+}
@@ -0,0 +1,47 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ChunkedScan class
+ */
+public class ChunkedScanTest {
+
+    @Test
+    public void testResultsInOrder() {
+        int size = 100_000;
+        List<Integer> expected = IntStream.range(0, size).filter(i -> i % 7 == 0).boxed().toList();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<Integer> found = ChunkedScan.scan(size, 0, pool, (from, to, l) -> {
+                for (int i = from; i < to; i++) {
+                    if (i % 7 == 0) {
+                        l.add(i);
+                    }
+                }
+            });
+            assertEquals(expected, found, "Les morceaux sont concaténés dans l'ordre");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSequentialBelowThreshold() {
+        Thread caller = Thread.currentThread();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<Boolean> onCaller = ChunkedScan.scan(100_000, 200_000, pool,
+                    (from, to, l) -> l.add(Thread.currentThread() == caller));
+            assertEquals(List.of(true), onCaller, "Un seul morceau, parcouru par l'appelant");
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
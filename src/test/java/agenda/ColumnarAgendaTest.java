@@ -0,0 +1,115 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ColumnarAgenda class
+ */
+public class ColumnarAgendaTest {
+
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+    Duration min_120 = Duration.ofMinutes(120);
+
+    @Test
+    public void testEventsAreRebuilt() {
+        ColumnarAgenda columnar = new ColumnarAgenda();
+        Event monthly = new Event("Monthly", LocalDateTime.of(2020, 1, 31, 10, 0), min_120);
+        monthly.setRepetition(ChronoUnit.MONTHS);
+        monthly.addException(LocalDate.of(2020, 3, 31));
+        monthly.setTermination(3);
+        columnar.addEvent(monthly);
+        columnar.addEvent(new Event(null, nov_1_2020_22_30, min_120));
+
+        Event rebuilt = columnar.findByTitle("Monthly").get(0);
+        assertEquals(monthly.toString(), rebuilt.toString());
+        assertEquals(3, rebuilt.getNumberOfOccurrences(), "La terminaison par nombre d'occurrences est conservée");
+        assertEquals(monthly.getTerminationDate(), rebuilt.getTerminationDate());
+        assertEquals(List.of(LocalDate.of(2020, 3, 31)), rebuilt.getRepetition().getExceptions());
+        assertEquals(1, columnar.findByTitle(null).size());
+        assertEquals(List.of(), columnar.findByTitle("Unknown"));
+        assertEquals(2, columnar.size());
+    }
+
+    @Test
+    public void testSameResultsAsAgenda() {
+        List<Event> all = AgendaTest.randomEvents(new Random(13), 300);
+        Agenda agenda = new Agenda();
+        ColumnarAgenda columnar = new ColumnarAgenda();
+        for (Event e : all) {
+            agenda.addEvent(e);
+            columnar.addEvent(e);
+        }
+        for (LocalDate day = LocalDate.of(2019, 12, 25); day.isBefore(LocalDate.of(2021, 6, 1)); day = day.plusDays(3)) {
+            assertEquals(describe(agenda.eventsInDay(day)), describe(columnar.eventsInDay(day)),
+                    "Mêmes événements que l'agenda le " + day);
+        }
+        Random random = new Random(17);
+        for (int i = 0; i < 200; i++) {
+            LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0).plusMinutes(random.nextInt(500 * 24 * 60));
+            Duration duration = Duration.ofMinutes(1 + random.nextInt(300));
+            assertEquals(agenda.isFreeFor(start, duration), columnar.isFreeFor(start, duration),
+                    "Même disponibilité que l'agenda à " + start);
+        }
+        for (Event candidate : AgendaTest.randomEvents(new Random(19), 100)) {
+            assertEquals(agenda.isFreeFor(candidate), columnar.isFreeFor(candidate),
+                    "Même disponibilité que l'agenda pour " + candidate);
+        }
+        assertEquals(describe(agenda.findByTitle("Event 42")), describe(columnar.findByTitle("Event 42")));
+    }
+
+    @Test
+    public void testParallelSameResultsAsSequential() {
+        ColumnarAgenda columnar = new ColumnarAgenda();
+        List<Event> all = AgendaTest.randomEvents(new Random(23), 20_000);
+        all.forEach(columnar::addEvent);
+        columnar.addEvent(new Event("Event 7", LocalDateTime.of(2020, 6, 1, 8, 0), min_120));
+        columnar.setParallelThreshold(0);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (LocalDate day = LocalDate.of(2020, 1, 1); day.isBefore(LocalDate.of(2021, 3, 1)); day = day.plusDays(11)) {
+                assertEquals(describe(columnar.eventsInDay(day)), describe(columnar.eventsInDay(day, pool)),
+                        "Mêmes événements dans le même ordre le " + day);
+            }
+            List<Event> found = columnar.findByTitle("Event 7", pool);
+            assertEquals(2, found.size());
+            assertEquals(describe(columnar.findByTitle("Event 7")), describe(found));
+        } finally {
+            pool.shutdown();
+        }
+        assertThrows(IllegalArgumentException.class, () -> columnar.setParallelThreshold(-1));
+    }
+
+    @Test
+    public void testEventsInDaysSameAsEventsInDay() {
+        ColumnarAgenda columnar = new ColumnarAgenda();
+        AgendaTest.randomEvents(new Random(29), 300).forEach(columnar::addEvent);
+        Random random = new Random(31);
+        List<LocalDate> days = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            days.add(LocalDate.of(2019, 12, 1).plusDays(random.nextInt(600)));
+        }
+        Map<LocalDate, List<Event>> found = columnar.eventsInDays(days);
+        assertEquals(days.stream().distinct().count(), found.size());
+        for (LocalDate day : days) {
+            assertEquals(describe(columnar.eventsInDay(day)), describe(found.get(day)),
+                    "Mêmes événements que eventsInDay le " + day);
+        }
+    }
+
+    private static List<String> describe(List<Event> events) {
+        return events.stream().map(Event::toString).toList();
+    }
+}
@@ -0,0 +1,216 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ConcurrentAgenda class
+ */
+public class ConcurrentAgendaTest {
+
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+    Duration min_120 = Duration.ofMinutes(120);
+
+    @Test
+    public void testSameResultsAsAgenda() {
+        ConcurrentAgenda concurrent = new ConcurrentAgenda();
+        Event simple = new Event("Simple event", nov_1_2020_22_30, min_120);
+        Event neverEnding = new Event("Never Ending", nov_1_2020_22_30.minusMonths(1), min_120);
+        neverEnding.setRepetition(ChronoUnit.DAYS);
+        concurrent.addEvent(simple);
+        concurrent.addEvent(neverEnding);
+
+        assertEquals(List.of(neverEnding, simple), concurrent.eventsInDay(nov_1_2020),
+                "Les résultats sont triés par mois de début");
+        assertEquals(List.of(neverEnding), concurrent.eventsInDay(nov_1_2020.minusDays(10)));
+        assertEquals(List.of(simple), concurrent.findByTitle("Simple event"));
+        assertFalse(concurrent.isFreeFor(new Event("Conflict", nov_1_2020_22_30.plusHours(1), min_120)));
+        assertFalse(concurrent.isFreeFor(LocalDateTime.of(2020, 10, 20, 23, 0), min_120));
+        assertTrue(concurrent.isFreeFor(LocalDateTime.of(2020, 10, 20, 12, 0), min_120));
+    }
+
+    @Test
+    public void testNoLostUpdates() throws Exception {
+        int threads = 8;
+        int eventsPerThread = 500;
+        ConcurrentAgenda concurrent = new ConcurrentAgenda();
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 2);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String title = "Thread " + t;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < eventsPerThread; i++) {
+                        // Several threads write to the same months
+                        concurrent.addEvent(new Event(title, nov_1_2020_22_30.plusDays(i % 90), min_120));
+                    }
+                    return null;
+                }));
+            }
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 2; r++) {
+                readers.add(executor.submit(() -> {
+                    start.await();
+                    while (writing.get()) {
+                        concurrent.eventsInDay(nov_1_2020.plusDays(10));
+                        concurrent.isFreeFor(nov_1_2020_22_30.plusDays(20), min_120);
+                        concurrent.findByTitle("Thread 0");
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int t = 0; t < threads; t++) {
+            assertEquals(eventsPerThread, concurrent.findByTitle("Thread " + t).size(),
+                    "Aucun ajout ne doit être perdu");
+        }
+        assertEquals(threads * 12, concurrent.eventsInDay(nov_1_2020.plusDays(10)).size(),
+                "Chaque fil ajoute 6 événements ce jour et 6 qui débordent de la veille");
+    }
+
+    @Test
+    public void testAddIfFreeIsAtomic() throws Exception {
+        int threads = 8;
+        int slots = 200;
+        ConcurrentAgenda concurrent = new ConcurrentAgenda();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> bookers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String title = "Thread " + t;
+                bookers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < slots; i++) {
+                        // Every thread tries to book every slot, shifted by 30 minutes
+                        LocalDateTime slot = nov_1_2020_22_30.plusHours(3 * i).plusMinutes(title.hashCode() % 2 * 30);
+                        concurrent.addIfFree(new Event(title, slot, min_120));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> booker : bookers) {
+                booker.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int booked = 0;
+        for (int t = 0; t < threads; t++) {
+            booked += concurrent.findByTitle("Thread " + t).size();
+        }
+        assertEquals(slots, booked, "Chaque créneau n'est réservé qu'une fois");
+    }
+
+    @Test
+    public void testAddAllIfFree() {
+        ConcurrentAgenda concurrent = new ConcurrentAgenda();
+        Event weekly = new Event("Weekly", nov_1_2020_22_30, min_120);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        Event later = new Event("Later", nov_1_2020_22_30.plusWeeks(30), min_120);
+        assertFalse(concurrent.addAllIfFree(List.of(weekly, later)));
+        assertTrue(concurrent.addAllIfFree(List.of(weekly)));
+        assertFalse(concurrent.addIfFree(later), "Chevauche une occurrence de l'événement hebdomadaire");
+        assertTrue(concurrent.addIfFree(new Event("Free", nov_1_2020_22_30.plusWeeks(30).plusHours(2), min_120)));
+    }
+
+    @Test
+    public void testRemoveEvent() {
+        ConcurrentAgenda concurrent = new ConcurrentAgenda();
+        Event simple = new Event("Simple event", nov_1_2020_22_30, min_120);
+        concurrent.addEvent(simple);
+        assertTrue(concurrent.removeEvent(simple));
+        assertFalse(concurrent.removeEvent(simple), "Un événement n'est retiré qu'une fois");
+        assertTrue(concurrent.isFreeFor(simple));
+        assertTrue(concurrent.findByTitle("Simple event").isEmpty());
+    }
+
+    @Test
+    public void testEventsCannotChangeWhileAdded() {
+        ConcurrentAgenda concurrent = new ConcurrentAgenda();
+        Event daily = new Event("Daily", nov_1_2020_22_30, min_120);
+        daily.setRepetition(ChronoUnit.DAYS);
+        concurrent.addEvent(daily);
+        concurrent.addEvent(daily);
+        assertEquals(List.of(daily), concurrent.findByTitle("Daily"), "Un événement n'est ajouté qu'une fois");
+        assertThrows(IllegalStateException.class, () -> daily.setStart(nov_1_2020_22_30.plusMonths(2)),
+                "Les instantanés ne suivraient pas le changement");
+        assertThrows(IllegalStateException.class, () -> daily.addException(nov_1_2020.plusDays(1)));
+        assertThrows(IllegalStateException.class, () -> daily.setTermination(3));
+        assertEquals(nov_1_2020_22_30, daily.getStart());
+        assertEquals(List.of(daily), concurrent.eventsInDay(nov_1_2020.plusDays(1)));
+
+        assertTrue(concurrent.removeEvent(daily));
+        daily.setStart(nov_1_2020_22_30.plusMonths(2));
+        concurrent.addEvent(daily);
+        assertTrue(concurrent.eventsInDay(nov_1_2020.plusDays(1)).isEmpty(), "Déplacé après son retrait");
+        assertTrue(concurrent.removeEvent(daily), "Retiré du mois où il a été ajouté");
+        assertTrue(concurrent.findByTitle("Daily").isEmpty());
+    }
+
+    @Test
+    public void testEventOfAnotherAgendaIsRejected() {
+        Event e = new Event("Shared", nov_1_2020_22_30, min_120);
+        new Agenda().addEvent(e);
+        ConcurrentAgenda concurrent = new ConcurrentAgenda();
+        assertThrows(IllegalArgumentException.class, () -> concurrent.addEvent(e));
+        assertThrows(IllegalArgumentException.class, () -> concurrent.addAllIfFree(List.of(e)));
+        assertTrue(concurrent.findByTitle("Shared").isEmpty());
+    }
+
+    @Test
+    public void testManyEventsInOneMonth() {
+        ConcurrentAgenda concurrent = new ConcurrentAgenda();
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Event e = new Event("Event " + i % 10, nov_1_2020_22_30.plusMinutes(i * 17L % 40_000), min_120);
+            events.add(e);
+            concurrent.addEvent(e);
+            if (i % 7 == 0) {
+                concurrent.removeEvent(events.get(i / 2));
+            }
+        }
+        Agenda agenda = new Agenda();
+        events.forEach(agenda::addEvent);
+        for (int i = 0; i < 2000; i += 7) {
+            agenda.removeEvent(events.get(i / 2));
+        }
+        for (LocalDate day = nov_1_2020; day.isBefore(nov_1_2020.plusMonths(1)); day = day.plusDays(1)) {
+            assertEquals(new HashSet<>(agenda.eventsInDay(day)), new HashSet<>(concurrent.eventsInDay(day)),
+                    "Mêmes résultats que l'agenda, le " + day);
+        }
+        assertEquals(new HashSet<>(agenda.findByTitle("Event 3")), new HashSet<>(concurrent.findByTitle("Event 3")));
+    }
+}
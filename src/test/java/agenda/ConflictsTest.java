@@ -0,0 +1,129 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the Conflicts class, against an enumeration of the occurrences
+ */
+public class ConflictsTest {
+
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+
+    LocalDate from = LocalDate.of(2019, 1, 1);
+    LocalDate to = LocalDate.of(2024, 1, 1);
+
+    @Test
+    public void testNeverEndingDailyEvent() {
+        Event daily = new Event("Daily", nov_1_2020_22_30, Duration.ofMinutes(120));
+        daily.setRepetition(ChronoUnit.DAYS);
+        assertTrue(Conflicts.overlaps(daily, seconds(LocalDateTime.of(2300, 5, 3, 0, 0)),
+                seconds(LocalDateTime.of(2300, 5, 3, 0, 10))), "Débordement sur le jour suivant");
+        assertFalse(Conflicts.overlaps(daily, seconds(LocalDateTime.of(2300, 5, 3, 0, 30)),
+                seconds(LocalDateTime.of(2300, 5, 3, 22, 30))));
+    }
+
+    @Test
+    public void testNeverEndingRepetitionsThatNeverMeet() {
+        Event weekly = new Event("Weekly", LocalDateTime.of(2020, 11, 2, 10, 0), Duration.ofMinutes(60));
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        Event other = new Event("Other weekly", LocalDateTime.of(2020, 11, 3, 10, 0), Duration.ofMinutes(60));
+        other.setRepetition(ChronoUnit.WEEKS);
+        Event monthly = new Event("Monthly", LocalDateTime.of(2020, 11, 2, 12, 0), Duration.ofMinutes(60));
+        monthly.setRepetition(ChronoUnit.MONTHS);
+        assertFalse(Conflicts.overlaps(weekly, other), "Pas le même jour de la semaine");
+        assertFalse(Conflicts.overlaps(weekly, monthly), "Pas à la même heure");
+        assertFalse(Conflicts.overlaps(monthly, weekly));
+    }
+
+    @Test
+    public void testNeverEndingMonthlyEvents() {
+        Event last = new Event("Last", LocalDateTime.of(2021, 1, 31, 23, 0), Duration.ofMinutes(120));
+        last.setRepetition(ChronoUnit.MONTHS);
+        Event first = new Event("First", LocalDateTime.of(2021, 2, 1, 0, 30), Duration.ofMinutes(30));
+        first.setRepetition(ChronoUnit.MONTHS);
+        assertTrue(Conflicts.overlaps(last, first), "Débordement sur le premier du mois suivant");
+        assertTrue(Conflicts.overlaps(first, last));
+        Agenda agenda = new Agenda();
+        LocalDateTime jan_1_2020_10_00 = LocalDateTime.of(2020, 1, 1, 10, 0);
+        for (int i = 0; i < 2000; i++) {
+            Event monthly = new Event("Monthly " + i, jan_1_2020_10_00.plusDays(1 + i % 27), Duration.ofMinutes(30));
+            monthly.setRepetition(ChronoUnit.MONTHS);
+            agenda.addEvent(monthly);
+        }
+        Event candidate = new Event("Candidate", jan_1_2020_10_00, Duration.ofMinutes(30));
+        candidate.setRepetition(ChronoUnit.MONTHS);
+        assertTrue(assertTimeout(Duration.ofMillis(200), () -> agenda.isFreeFor(candidate)),
+                "Jamais le même jour du mois");
+    }
+
+    @Test
+    public void testExceptionsRemoveConflicts() {
+        Event daily = new Event("Daily", nov_1_2020_22_30, Duration.ofMinutes(60));
+        daily.setRepetition(ChronoUnit.DAYS);
+        Event weekly = new Event("Weekly", nov_1_2020_22_30.plusDays(3), Duration.ofMinutes(30));
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        weekly.setTermination(2L);
+        assertTrue(Conflicts.overlaps(daily, weekly));
+        daily.addException(LocalDate.of(2020, 11, 4));
+        assertTrue(Conflicts.overlaps(daily, weekly));
+        daily.addException(LocalDate.of(2020, 11, 11));
+        assertFalse(Conflicts.overlaps(daily, weekly), "Les deux occurrences communes sont des exceptions");
+        assertFalse(Conflicts.overlaps(weekly, daily));
+    }
+
+    @Test
+    public void testSameResultsAsEnumeration() {
+        Random random = new Random(5);
+        for (int i = 0; i < 400; i++) {
+            Event a = randomEvent(random);
+            Event b = randomEvent(random);
+            assertEquals(enumeratedOverlap(a, b), Conflicts.overlaps(a, b), a + " / " + b);
+            LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0).plusMinutes(random.nextInt(500 * 24 * 60));
+            LocalDateTime end = start.plusMinutes(random.nextInt(4 * 24 * 60));
+            assertEquals(enumeratedOverlap(a, start, end), Conflicts.overlaps(a, seconds(start), seconds(end)),
+                    a + " / " + start + " - " + end);
+        }
+    }
+
+    // Terminated (or simple) events, so that all occurrences can be enumerated
+    private Event randomEvent(Random random) {
+        ChronoUnit[] frequencies = { null, ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS };
+        LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0)
+                .plusDays(random.nextInt(400)).plusMinutes(random.nextInt(24 * 60) / 15 * 15);
+        Event e = new Event("Event", start, Duration.ofMinutes(random.nextInt(2 * 24 * 60) / 15 * 15));
+        ChronoUnit frequency = frequencies[random.nextInt(frequencies.length)];
+        if (frequency != null) {
+            e.setRepetition(frequency);
+            for (int x = random.nextInt(6); x > 0; x--) {
+                e.addException(start.toLocalDate().plus(random.nextInt(15), frequency));
+            }
+            e.setTermination(start.toLocalDate().plusDays(random.nextInt(500)));
+        }
+        return e;
+    }
+
+    private boolean enumeratedOverlap(Event a, Event b) {
+        List<LocalDateTime> other = b.occurrencesBetween(from, to).toList();
+        return a.occurrencesBetween(from, to).anyMatch(start -> other.stream().anyMatch(
+                s -> start.isBefore(s.plus(b.getDuration())) && s.isBefore(start.plus(a.getDuration()))));
+    }
+
+    private boolean enumeratedOverlap(Event a, LocalDateTime start, LocalDateTime end) {
+        return a.occurrencesBetween(from, to).anyMatch(
+                s -> start.isBefore(s.plus(a.getDuration())) && s.isBefore(end));
+    }
+
+    private static long seconds(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+}
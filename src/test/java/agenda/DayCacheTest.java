@@ -0,0 +1,73 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the DayCache class
+ */
+public class DayCacheTest {
+
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+    long nov_1_2020 = nov_1_2020_22_30.toLocalDate().toEpochDay();
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        DayCache cache = new DayCache(2);
+        cache.put(1, List.of());
+        cache.put(2, List.of());
+        assertNotNull(cache.get(1));
+        cache.put(3, List.of());
+        assertNull(cache.get(2), "Le jour le moins récemment utilisé est évincé");
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(3));
+        assertEquals(new DayCacheStats(2, 2, 3, 1, 1, 0), cache.stats());
+    }
+
+    @Test
+    public void testResultsAreCopied() {
+        DayCache cache = new DayCache(2);
+        Event e = new Event("Simple", nov_1_2020_22_30, Duration.ofMinutes(120));
+        cache.put(nov_1_2020, List.of(e));
+        cache.get(nov_1_2020).clear();
+        assertEquals(List.of(e), cache.get(nov_1_2020), "Le résultat mis en cache ne peut pas être modifié");
+    }
+
+    @Test
+    public void testInvalidateOnlyTheDaysOfAnEvent() {
+        DayCache cache = new DayCache(100);
+        for (long day = nov_1_2020 - 10; day < nov_1_2020 + 20; day++) {
+            cache.put(day, List.of());
+        }
+        cache.invalidate(new Event("Simple", nov_1_2020_22_30, Duration.ofMinutes(120)));
+        assertEquals(28, cache.stats().size(), "L'événement occupe deux jours");
+        Event weekly = new Event("Weekly", nov_1_2020_22_30, Duration.ofMinutes(30));
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        cache.invalidate(weekly);
+        assertEquals(26, cache.stats().size(), "Les 8 et 15 novembre");
+        assertEquals(4, cache.stats().invalidations());
+    }
+
+    @Test
+    public void testInvalidateAChange() {
+        DayCache cache = new DayCache(100);
+        for (long day = nov_1_2020; day < nov_1_2020 + 30; day++) {
+            cache.put(day, List.of());
+        }
+        Event weekly = new Event("Weekly", nov_1_2020_22_30, Duration.ofMinutes(30));
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        Set<Long> before = cache.daysOf(weekly);
+        assertEquals(5, before.size());
+        weekly.addException(nov_1_2020_22_30.toLocalDate().plusWeeks(2));
+        cache.invalidate(weekly, before);
+        assertEquals(1, cache.stats().invalidations(), "Seul le jour de l'exception change");
+        assertNull(cache.get(nov_1_2020 + 14));
+    }
+}
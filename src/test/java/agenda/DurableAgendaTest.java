@@ -0,0 +1,284 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the DurableAgenda class
+ */
+public class DurableAgendaTest {
+
+    @TempDir
+    Path directory;
+
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+    Duration min_120 = Duration.ofMinutes(120);
+
+    @Test
+    public void testRecoversAfterReopening() throws IOException {
+        List<Event> events = AgendaTest.randomEvents(new Random(41), 100);
+        Event weekly = new Event("Weekly", nov_1_2020_22_30, min_120);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            agenda.addEvents(events);
+            agenda.addEvent(weekly);
+            agenda.addException(weekly, nov_1_2020_22_30.toLocalDate().plusWeeks(1));
+        }
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            assertEquals(describe(events), describe(agenda.getEvents().subList(0, events.size())),
+                    "Les événements sont relus dans l'ordre");
+            Event recovered = agenda.findByTitle("Weekly").get(0);
+            assertFalse(recovered.isInDay(nov_1_2020_22_30.toLocalDate().plusWeeks(1)), "L'exception est rejouée");
+            assertTrue(recovered.isInDay(nov_1_2020_22_30.toLocalDate().plusWeeks(2)));
+        }
+    }
+
+    @Test
+    public void testEventAddedTwiceIsLoggedOnce() throws IOException {
+        Event simple = new Event("Simple", nov_1_2020_22_30, min_120);
+        Event weekly = new Event("Weekly", nov_1_2020_22_30, min_120);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        LocalDate excluded = nov_1_2020_22_30.toLocalDate().plusWeeks(1);
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            agenda.addEvent(simple);
+            agenda.addEvent(simple);
+            agenda.addEvent(weekly);
+            agenda.addException(weekly, excluded);
+            assertEquals(2, agenda.getEvents().size());
+        }
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            assertEquals(List.of("Simple", "Weekly"), agenda.getEvents().stream().map(Event::getTitle).toList(),
+                    "Un événement ajouté deux fois n'est relu qu'une fois");
+            Event recovered = agenda.findByTitle("Weekly").get(0);
+            assertFalse(recovered.isInDay(excluded), "L'exception est rejouée sur le bon événement");
+        }
+    }
+
+    @Test
+    public void testChangesOfEventsAreLogged() throws IOException {
+        LocalDate nov_1_2020 = nov_1_2020_22_30.toLocalDate();
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            for (String title : List.of("Moved", "Longer", "Repeated", "Excepted", "Terminated", "Counted", "Simple")) {
+                Event e = new Event(title, nov_1_2020_22_30, min_120);
+                if (!title.equals("Moved") && !title.equals("Longer") && !title.equals("Repeated")) {
+                    e.setRepetition(ChronoUnit.DAYS);
+                }
+                agenda.addEvent(e);
+            }
+            agenda.findByTitle("Moved").get(0).setStart(nov_1_2020_22_30.plusDays(3));
+            agenda.findByTitle("Longer").get(0).setDuration(Duration.ofDays(2));
+            agenda.findByTitle("Repeated").get(0).setRepetition(ChronoUnit.WEEKS);
+            agenda.findByTitle("Excepted").get(0).addException(nov_1_2020.plusDays(1));
+            agenda.findByTitle("Terminated").get(0).setTermination(nov_1_2020.plusDays(2));
+            agenda.findByTitle("Counted").get(0).setTermination(5);
+            agenda.findByTitle("Simple").get(0).setRepetition(null);
+        }
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            assertEquals(nov_1_2020_22_30.plusDays(3), agenda.findByTitle("Moved").get(0).getStart(),
+                    "Le déplacement est relu");
+            assertEquals(Duration.ofDays(2), agenda.findByTitle("Longer").get(0).getDuration(),
+                    "La nouvelle durée est relue");
+            assertEquals(ChronoUnit.WEEKS, agenda.findByTitle("Repeated").get(0).getRepetition().getFrequency(),
+                    "La répétition est relue");
+            assertEquals(List.of(nov_1_2020.plusDays(1)),
+                    agenda.findByTitle("Excepted").get(0).getRepetition().getExceptions(), "L'exception est relue");
+            assertEquals(nov_1_2020.plusDays(2), agenda.findByTitle("Terminated").get(0).getTerminationDate(),
+                    "La terminaison est relue");
+            assertEquals(5, agenda.findByTitle("Counted").get(0).getNumberOfOccurrences());
+            assertFalse(agenda.findByTitle("Simple").get(0).hasRepetition(), "La répétition supprimée est relue");
+            assertEquals(List.of("Moved", "Excepted", "Terminated", "Counted"),
+                    agenda.eventsInDay(nov_1_2020.plusDays(3)).stream().map(Event::getTitle).toList(),
+                    "Les index suivent les changements relus");
+            // The events recovered are logged too
+            agenda.findByTitle("Counted").get(0).setTermination(2);
+        }
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            assertEquals(2, agenda.findByTitle("Counted").get(0).getNumberOfOccurrences());
+        }
+    }
+
+    @Test
+    public void testChangesSurviveCompaction() throws IOException {
+        Event daily = new Event("Daily", nov_1_2020_22_30, min_120);
+        daily.setRepetition(ChronoUnit.DAYS);
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            agenda.addEvent(daily);
+            daily.setTermination(10);
+            agenda.compact();
+            daily.addException(nov_1_2020_22_30.toLocalDate().plusDays(2));
+        }
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            Event recovered = agenda.getEvents().get(0);
+            assertEquals(10, recovered.getNumberOfOccurrences(), "L'instantané contient le changement");
+            assertEquals(List.of(nov_1_2020_22_30.toLocalDate().plusDays(2)), recovered.getRepetition().getExceptions());
+        }
+    }
+
+    @Test
+    public void testEventOfAnotherAgendaIsRejected() throws IOException {
+        Event e = new Event("Shared", nov_1_2020_22_30, min_120);
+        new Agenda().addEvent(e);
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            assertThrows(IllegalArgumentException.class, () -> agenda.addEvent(e),
+                    "Ses changements ne seraient pas journalisés");
+            assertTrue(agenda.getEvents().isEmpty());
+        }
+    }
+
+    @Test
+    public void testTornRecordEndsTheLog() throws IOException {
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            agenda.addEvent(new Event("First", nov_1_2020_22_30, min_120));
+            agenda.addEvent(new Event("Second", nov_1_2020_22_30.plusDays(1), min_120));
+        }
+        Path segment = segments().get(0);
+        long size = Files.size(segment);
+        // A crash while writing a third record
+        Files.write(segment, new byte[] { 40, 0, 0, 0, 1, 2, 3, 4, 5 }, StandardOpenOption.APPEND);
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            assertEquals(2, agenda.getEvents().size(), "Les enregistrements complets sont conservés");
+            agenda.addEvent(new Event("Third", nov_1_2020_22_30.plusDays(2), min_120));
+        }
+        assertEquals(size, Files.size(segment), "Le segment est tronqué après le dernier enregistrement valide");
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            assertEquals(3, agenda.getEvents().size());
+        }
+    }
+
+    @Test
+    public void testCorruptedRecordEndsTheLog() throws IOException {
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            agenda.addEvent(new Event("First", nov_1_2020_22_30, min_120));
+            agenda.addEvent(new Event("Second", nov_1_2020_22_30.plusDays(1), min_120));
+        }
+        Path segment = segments().get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(segment, bytes);
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            assertEquals(List.of("First"), agenda.getEvents().stream().map(Event::getTitle).toList(),
+                    "Le CRC détecte l'enregistrement corrompu");
+        }
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        List<Event> events = AgendaTest.randomEvents(new Random(43), 200);
+        try (DurableAgenda agenda = DurableAgenda.open(directory, 1024, 1000)) {
+            for (Event e : events) {
+                agenda.addEvent(e);
+            }
+            assertTrue(segments().size() > 2, "Les segments pleins sont fermés");
+            agenda.compact();
+            assertEquals(1, segments().size(), "Seul le dernier segment reste après l'instantané");
+            agenda.addEvent(new Event("After", nov_1_2020_22_30, min_120));
+        }
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            List<Event> recovered = agenda.getEvents();
+            assertEquals(describe(events), describe(recovered.subList(0, events.size())),
+                    "L'instantané puis le journal redonnent les événements");
+            assertEquals("After", recovered.get(events.size()).getTitle());
+        }
+    }
+
+    @Test
+    public void testBackgroundCompaction() throws Exception {
+        try (DurableAgenda agenda = DurableAgenda.open(directory, 256, 2)) {
+            for (int i = 0; i < 100; i++) {
+                agenda.addEvent(new Event("Event " + i, nov_1_2020_22_30.plusDays(i), min_120));
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.anyMatch(f -> f.getFileName().toString().startsWith("snapshot-")),
+                    "Un instantané est écrit en tâche de fond");
+        }
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            assertEquals(100, agenda.getEvents().size());
+            assertEquals(1, agenda.findByTitle("Event 99").size());
+        }
+    }
+
+    @Test
+    public void testBackgroundCompactionFailureIsReported() throws IOException {
+        int[] added = { 0 };
+        IOException failure = assertThrows(IOException.class, () -> {
+            try (DurableAgenda agenda = DurableAgenda.open(directory, 256, 2)) {
+                // A directory in place of each temporary snapshot
+                for (int id = 0; id < 100; id++) {
+                    Files.createDirectory(directory.resolve("snapshot-%012d.bin.tmp".formatted(id)));
+                }
+                for (int i = 0; i < 100; i++) {
+                    // Durable even if it reports the failure
+                    added[0]++;
+                    agenda.addEvent(new Event("Event " + i, nov_1_2020_22_30.plusDays(i), min_120));
+                }
+            }
+        }, "L'échec de l'instantané est signalé");
+        assertEquals("Background compaction failed", failure.getMessage());
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            assertEquals(added[0], agenda.getEvents().size(), "Les segments sont conservés");
+        }
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        int threads = 8;
+        int eventsPerThread = 200;
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> writers = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    String title = "Thread " + t;
+                    writers.add(executor.submit(() -> {
+                        for (int i = 0; i < eventsPerThread; i++) {
+                            agenda.addEvent(new Event(title, nov_1_2020_22_30.plusHours(i), min_120));
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> writer : writers) {
+                    writer.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+        try (DurableAgenda agenda = DurableAgenda.open(directory)) {
+            assertEquals(threads * eventsPerThread, agenda.getEvents().size(), "Aucune écriture n'est perdue");
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().startsWith("wal-")).sorted().toList();
+        }
+    }
+
+    private static List<String> describe(List<Event> events) {
+        List<String> l = new ArrayList<>();
+        for (Event e : events) {
+            l.add(e.toString() + " " + e.getTerminationDate() + " "
+                    + (e.hasRepetition() ? e.getRepetition().getExceptions() : List.of()));
+        }
+        return l;
+    }
+}
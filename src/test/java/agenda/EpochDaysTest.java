@@ -0,0 +1,20 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the EpochDays class
+ */
+public class EpochDaysTest {
+
+    @Test
+    public void testDayOfMonthMatchesLocalDate() {
+        for (LocalDate day = LocalDate.of(1599, 12, 1); day.isBefore(LocalDate.of(2401, 3, 1)); day = day.plusDays(1)) {
+            assertEquals(day.getDayOfMonth(), EpochDays.dayOfMonth(day.toEpochDay()), day.toString());
+        }
+    }
+}
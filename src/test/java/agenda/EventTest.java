@@ -6,6 +6,9 @@ import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -69,8 +72,11 @@ public class EventTest {
         event.addException(nov_1_2020.plusDays(5));
         
         assertTrue(event.isInDay(nov_1_2020.plusDays(4)));
-        assertFalse(event.isInDay(nov_1_2020.plusDays(5)),
-            "L'événement ne doit pas se produire le jour de l'exception");
+        assertTrue(event.isInDay(nov_1_2020.plusDays(5)),
+            "L'occurrence de la veille déborde sur le jour de l'exception");
+        assertEquals(List.of(nov_1_2020_22_30.plusDays(4)),
+            event.occurrencesBetween(nov_1_2020.plusDays(5), nov_1_2020.plusDays(5)).toList(),
+            "L'événement ne doit pas commencer le jour de l'exception");
         assertTrue(event.isInDay(nov_1_2020.plusDays(6)));
     }
 
@@ -205,7 +211,9 @@ public class EventTest {
         
         assertTrue(event.isInDay(LocalDate.of(2020, 11, 10)),
             "L'événement doit se produire le jour de terminaison");
-        assertFalse(event.isInDay(LocalDate.of(2020, 11, 11)),
+        assertTrue(event.isInDay(LocalDate.of(2020, 11, 11)),
+            "La dernière occurrence (22h30, 120 minutes) déborde sur le lendemain");
+        assertFalse(event.isInDay(LocalDate.of(2020, 11, 12)),
             "L'événement ne doit pas se produire après la date de terminaison");
         assertFalse(event.isInDay(LocalDate.of(2020, 11, 15)),
             "L'événement ne doit pas se produire après la date de terminaison");
@@ -227,6 +235,30 @@ public class EventTest {
             "L'événement ne doit pas être présent le quatrième jour");
     }
 
+    @Test
+    public void testRepetitiveEventSpanningMultipleDays() {
+        Event event = new Event("Weekly overnight", nov_1_2020_22_30, Duration.ofHours(30));
+        event.setRepetition(ChronoUnit.WEEKS);
+        event.addException(nov_1_2020.plusWeeks(1));
+
+        assertTrue(event.isInDay(nov_1_2020.plusDays(1)), "L'occurrence déborde sur le lendemain");
+        assertTrue(event.isInDay(nov_1_2020.plusDays(2)), "L'occurrence se termine le surlendemain à 4h30");
+        assertFalse(event.isInDay(nov_1_2020.plusDays(3)));
+        assertFalse(event.isInDay(nov_1_2020.plusDays(8)), "Pas d'occurrence le jour de l'exception");
+        assertTrue(event.isInDay(nov_1_2020.plusDays(15)));
+    }
+
+    @Test
+    public void testMonthlyEventSpanningIntoNextMonth() {
+        Event event = new Event("Monthly", LocalDateTime.of(2021, 1, 31, 20, 0), Duration.ofHours(48));
+        event.setRepetition(ChronoUnit.MONTHS);
+
+        assertTrue(event.isInDay(LocalDate.of(2021, 2, 2)));
+        assertFalse(event.isInDay(LocalDate.of(2021, 3, 1)), "Pas d'occurrence le 31 février");
+        assertTrue(event.isInDay(LocalDate.of(2021, 4, 1)));
+        assertTrue(event.isInDay(LocalDate.of(2021, 4, 2)));
+    }
+
     @Test
     public void testRepetitiveEventAtStartDate() {
         Event event = new Event("Daily", nov_1_2020_22_30, min_120);
@@ -235,4 +267,172 @@ public class EventTest {
         assertTrue(event.isInDay(nov_1_2020),
             "L'événement doit se produire à sa date de début (steps = 0)");
     }
+
+    @Test
+    public void testGetRepetition() {
+        Event event = new Event("Weekly", nov_1_2020_22_30, min_120);
+        assertNull(event.getRepetition(), "Un événement simple n'a pas de répétition");
+        event.setRepetition(ChronoUnit.WEEKS);
+        assertEquals(ChronoUnit.WEEKS, event.getRepetition().getFrequency());
+    }
+
+    @Test
+    public void testOccurrencesBetweenForMonthlyRepetition() {
+        Event event = new Event("Monthly", LocalDateTime.of(2021, 1, 31, 10, 0), Duration.ofMinutes(60));
+        event.setRepetition(ChronoUnit.MONTHS);
+        event.addException(LocalDate.of(2021, 5, 31));
+
+        assertEquals(List.of(LocalDateTime.of(2021, 3, 31, 10, 0), LocalDateTime.of(2021, 7, 31, 10, 0)),
+            event.occurrencesBetween(LocalDate.of(2021, 2, 1), LocalDate.of(2021, 7, 31)).toList(),
+            "Pas d'occurrence les mois sans 31, ni le jour de l'exception");
+    }
+
+    @Test
+    public void testOccurrencesBetweenStopsAtTermination() {
+        Event event = new Event("Weekly", nov_1_2020_22_30, min_120);
+        event.setRepetition(ChronoUnit.WEEKS);
+        event.setTermination(3L);
+
+        assertEquals(3, event.occurrencesBetween(nov_1_2020.minusDays(10), nov_1_2020.plusYears(1)).count());
+        assertEquals(List.of(nov_1_2020_22_30, nov_1_2020_22_30.plusWeeks(1)),
+            event.occurrencesBetween(nov_1_2020.plusDays(1), nov_1_2020.plusDays(8)).toList(),
+            "La première occurrence déborde sur le 2 novembre");
+        assertEquals(List.of(nov_1_2020_22_30.plusWeeks(1)),
+            event.occurrencesBetween(nov_1_2020.plusDays(2), nov_1_2020.plusDays(8)).toList());
+    }
+
+    @Test
+    public void testOccurrencesBetweenForSimpleEvent() {
+        Event simple = new Event("Simple", nov_1_2020_22_30, min_120);
+        assertEquals(List.of(nov_1_2020_22_30),
+            simple.occurrencesBetween(nov_1_2020.plusDays(1), nov_1_2020.plusDays(3)).toList(),
+            "Un événement qui déborde sur la période en fait partie");
+        assertEquals(0, simple.occurrencesBetween(nov_1_2020.plusDays(2), nov_1_2020.plusDays(3)).count());
+    }
+
+    @Test
+    public void testSetStartAndDuration() {
+        Event e = new Event("Moved", nov_1_2020_22_30, min_120);
+        e.setStart(nov_1_2020_22_30.plusDays(2));
+        assertFalse(e.isInDay(nov_1_2020), "L'événement a été déplacé");
+        assertTrue(e.isInDay(nov_1_2020.plusDays(3)), "L'événement finit le lendemain de son début");
+        e.setDuration(Duration.ofMinutes(30));
+        assertFalse(e.isInDay(nov_1_2020.plusDays(3)), "L'événement finit le jour de son début");
+        e.setRepetition(ChronoUnit.DAYS);
+        e.setRepetition(null);
+        assertFalse(e.hasRepetition(), "La répétition est supprimée");
+    }
+
+    @Test
+    public void testSetStartKeepsACountTermination() {
+        Event e = new Event("Count", nov_1_2020_22_30, min_120);
+        e.setRepetition(ChronoUnit.WEEKS);
+        e.setTermination(3);
+        Agenda agenda = new Agenda();
+        agenda.addEvent(e);
+        e.setStart(nov_1_2020_22_30.plusDays(10));
+        assertEquals(3, e.getNumberOfOccurrences(), "Le nombre d'occurrences est conservé");
+        assertEquals(nov_1_2020.plusDays(24), e.getTerminationDate(), "La date de fin suit le début");
+        assertEquals(3, e.occurrencesBetween(nov_1_2020, nov_1_2020.plusYears(1)).count());
+        assertEquals(List.of(e), agenda.eventsInDay(nov_1_2020.plusDays(24)));
+    }
+
+    @Test
+    public void testSetStartKeepsADateTermination() {
+        Event e = new Event("Date", nov_1_2020_22_30, min_120);
+        e.setRepetition(ChronoUnit.WEEKS);
+        e.setTermination(nov_1_2020.plusDays(14));
+        e.setStart(nov_1_2020_22_30.plusDays(7));
+        assertEquals(nov_1_2020.plusDays(14), e.getTerminationDate(), "La date de fin est conservée");
+        assertEquals(2, e.getNumberOfOccurrences(), "Le nombre d'occurrences suit le début");
+        assertEquals(e.occurrencesBetween(nov_1_2020, nov_1_2020.plusYears(1)).count(), e.getNumberOfOccurrences());
+    }
+
+    @Test
+    public void testChangeListenerIsNotified() {
+        Event e = new Event("Listened", nov_1_2020_22_30, min_120);
+        List<String> calls = new ArrayList<>();
+        e.setChangeListener(new Event.ChangeListener() {
+            @Override
+            public void beforeChange(Event changed) {
+                calls.add("before " + changed.hasRepetition());
+            }
+
+            @Override
+            public void afterChange(Event changed) {
+                calls.add("after " + changed.hasRepetition());
+            }
+        });
+        e.setRepetition(ChronoUnit.DAYS);
+        e.addException(nov_1_2020.plusDays(1));
+        e.addException(nov_1_2020.plusDays(1));
+        e.setTermination(5);
+        e.setStart(nov_1_2020_22_30.plusHours(1));
+        e.setDuration(Duration.ofMinutes(30));
+        assertEquals(List.of("before false", "after true", "before true", "after true", "before true", "after true",
+                "before true", "after true", "before true", "after true"), calls,
+                "Chaque changement est notifié avant et après, une exception déjà présente ne change rien");
+    }
+
+    @Test
+    public void testNextOccurrenceAfter() {
+        Event simple = new Event("Simple", nov_1_2020_22_30, min_120);
+        assertEquals(nov_1_2020_22_30, simple.nextOccurrenceAfter(nov_1_2020_22_30.minusSeconds(1)));
+        assertNull(simple.nextOccurrenceAfter(nov_1_2020_22_30), "Strictement après");
+
+        Event daily = new Event("Daily", nov_1_2020_22_30, min_120);
+        daily.setRepetition(ChronoUnit.DAYS);
+        daily.addException(nov_1_2020.plusDays(3));
+        daily.addException(nov_1_2020.plusDays(4));
+        daily.setTermination(nov_1_2020.plusDays(10));
+        assertEquals(nov_1_2020_22_30, daily.nextOccurrenceAfter(nov_1_2020_22_30.minusYears(1)));
+        assertEquals(nov_1_2020_22_30.plusDays(2), daily.nextOccurrenceAfter(nov_1_2020_22_30.plusDays(1)));
+        assertEquals(nov_1_2020_22_30.plusDays(5), daily.nextOccurrenceAfter(nov_1_2020_22_30.plusDays(2)),
+                "Les exceptions sont sautées");
+        assertEquals(nov_1_2020_22_30.plusDays(10), daily.nextOccurrenceAfter(nov_1_2020.plusDays(10).atStartOfDay()));
+        assertNull(daily.nextOccurrenceAfter(nov_1_2020_22_30.plusDays(10)), "Après la terminaison");
+
+        Event monthly = new Event("Monthly", LocalDateTime.of(2021, 1, 31, 9, 0), min_120);
+        monthly.setRepetition(ChronoUnit.MONTHS);
+        assertEquals(LocalDateTime.of(2021, 3, 31, 9, 0), monthly.nextOccurrenceAfter(LocalDateTime.of(2021, 2, 1, 0, 0)),
+                "Pas d'occurrence un 31 février");
+    }
+
+    @Test
+    public void testNextOccurrenceAfterSameAsOccurrencesBetween() {
+        Random random = new Random(89);
+        for (Event e : AgendaTest.randomEvents(random, 300)) {
+            LocalDateTime time = LocalDateTime.of(2019, 12, 1, 0, 0).plusMinutes(random.nextInt(600 * 24 * 60));
+            LocalDateTime expected = e.occurrencesBetween(time.toLocalDate(), time.toLocalDate().plusYears(3))
+                    .filter(start -> start.isAfter(time))
+                    .findFirst().orElse(null);
+            assertEquals(expected, e.nextOccurrenceAfter(time), e + " après " + time);
+        }
+    }
+
+    @Test
+    public void testIsInDaySameResultsAsCalendarComputation() {
+        Random random = new Random(13);
+        ChronoUnit[] frequencies = { ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS, ChronoUnit.YEARS };
+        for (int i = 0; i < 200; i++) {
+            LocalDateTime start = LocalDateTime.of(2020, 1, 1, 10, 0).plusDays(random.nextInt(800));
+            Event event = new Event("Event", start, min_120);
+            ChronoUnit freq = frequencies[random.nextInt(frequencies.length)];
+            event.setRepetition(freq);
+            event.addException(start.toLocalDate().plus(random.nextInt(5), freq));
+            if (random.nextBoolean()) {
+                event.setTermination(start.toLocalDate().plusDays(random.nextInt(2000)));
+            }
+            for (int d = -10; d < 3000; d += 1 + random.nextInt(3)) {
+                LocalDate day = start.toLocalDate().plusDays(d);
+                // The computation of isInDay before epoch days were used
+                boolean expected = !day.isBefore(start.toLocalDate())
+                    && !event.getRepetition().isException(day)
+                    && start.toLocalDate().plus(freq.between(start.toLocalDate(), day), freq).equals(day)
+                    && (event.getTerminationDate() == null || !day.isAfter(event.getTerminationDate()));
+                assertEquals(expected, event.isInDay(day), event + " " + freq + " " + day);
+                assertEquals(expected, event.isInDay(day.toEpochDay()));
+            }
+        }
+    }
 }
@@ -0,0 +1,140 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ICalendar class
+ */
+public class ICalendarTest {
+
+    @Test
+    public void testImport() throws IOException {
+        String ics = """
+                BEGIN:VCALENDAR\r
+                VERSION:2.0\r
+                BEGIN:VEVENT\r
+                UID:1\r
+                SUMMARY:Réunion\\, équipe\r
+                DTSTART;TZID=Europe/Paris:20201101T223000\r
+                DTEND;TZID=Europe/Paris:20201102T003000\r
+                RRULE:FREQ=WEEKLY;COUNT=3\r
+                EXDATE;TZID=Europe/Paris:20201108T223000\r
+                BEGIN:VALARM\r
+                ACTION:DISPLAY\r
+                DESCRIPTION:ne doit pas être le titre\r
+                END:VALARM\r
+                END:VEVENT\r
+                BEGIN:VEVENT\r
+                SUMMARY:Un titre plié sur \r
+                 deux lignes\r
+                DTSTART;VALUE=DATE:20201225\r
+                RRULE:FREQ=MONTHLY;UNTIL=20210325\r
+                END:VEVENT\r
+                BEGIN:VEVENT\r
+                SUMMARY:Tous les deux jours\r
+                DTSTART:20201101T080000Z\r
+                DURATION:PT1H\r
+                RRULE:FREQ=DAILY;INTERVAL=2\r
+                END:VEVENT\r
+                END:VCALENDAR\r
+                """;
+        Agenda agenda = new Agenda();
+        assertEquals(2, ICalendar.importInto(new StringReader(ics), agenda),
+                "Les répétitions avec INTERVAL ne sont pas importées");
+
+        Event weekly = agenda.getEvents().get(0);
+        assertEquals("Réunion, équipe", weekly.getTitle());
+        assertEquals(LocalDateTime.of(2020, 11, 1, 22, 30), weekly.getStart());
+        assertEquals(Duration.ofHours(2), weekly.getDuration());
+        assertEquals(ChronoUnit.WEEKS, weekly.getRepetition().getFrequency());
+        assertEquals(3, weekly.getNumberOfOccurrences());
+        assertEquals(List.of(LocalDate.of(2020, 11, 8)), weekly.getRepetition().getExceptions());
+
+        Event monthly = agenda.getEvents().get(1);
+        assertEquals("Un titre plié sur deux lignes", monthly.getTitle());
+        assertEquals(Duration.ofDays(1), monthly.getDuration(), "Un événement à la journée dure un jour");
+        assertEquals(LocalDate.of(2021, 3, 25), monthly.getTerminationDate());
+    }
+
+    @Test
+    public void testUntilBeforeTheStartTime() throws IOException {
+        String ics = """
+                BEGIN:VCALENDAR\r
+                BEGIN:VEVENT\r
+                SUMMARY:Avant l'heure\r
+                DTSTART:20201101T100000\r
+                DURATION:PT1H\r
+                RRULE:FREQ=DAILY;UNTIL=20201105T090000\r
+                END:VEVENT\r
+                BEGIN:VEVENT\r
+                SUMMARY:À l'heure\r
+                DTSTART:20201101T100000\r
+                DURATION:PT1H\r
+                RRULE:FREQ=WEEKLY;UNTIL=20201115T100000\r
+                END:VEVENT\r
+                END:VCALENDAR\r
+                """;
+        Agenda agenda = new Agenda();
+        assertEquals(2, ICalendar.importInto(new StringReader(ics), agenda));
+
+        Event daily = agenda.getEvents().get(0);
+        assertEquals(4, daily.getNumberOfOccurrences(), "Le 5 novembre à 10h est après UNTIL");
+        assertFalse(daily.isInDay(LocalDate.of(2020, 11, 5)));
+        assertTrue(daily.isInDay(LocalDate.of(2020, 11, 4)));
+
+        Event weekly = agenda.getEvents().get(1);
+        assertEquals(3, weekly.getNumberOfOccurrences(), "UNTIL est inclus");
+        assertTrue(weekly.isInDay(LocalDate.of(2020, 11, 15)));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<Event> events = new ArrayList<>(AgendaTest.randomEvents(new Random(47), 200));
+        Event monthly = new Event("Loyer ; charges, taxes \\ " + "é".repeat(80), LocalDateTime.of(2020, 1, 31, 9, 0),
+                Duration.ofMinutes(-5));
+        monthly.setRepetition(ChronoUnit.MONTHS);
+        monthly.setTermination(2);
+        events.add(monthly);
+        events.add(new Event(null, LocalDateTime.of(2020, 1, 1, 0, 0), Duration.ZERO));
+        StringWriter out = new StringWriter();
+        ICalendar.write(events, out);
+        for (String line : out.toString().split("\r\n")) {
+            assertTrue(line.getBytes(StandardCharsets.UTF_8).length <= 75,
+                    "Les lignes sont pliées à 75 octets");
+        }
+
+        List<Event> read = new ArrayList<>();
+        assertEquals(events.size(), ICalendar.read(new StringReader(out.toString()), read::add));
+        for (int i = 0; i < events.size(); i++) {
+            Event expected = events.get(i);
+            Event actual = read.get(i);
+            assertEquals(expected.toString(), actual.toString());
+            assertEquals(expected.getNumberOfOccurrences(), actual.getNumberOfOccurrences());
+            assertEquals(expected.getTerminationDate(), actual.getTerminationDate());
+            if (expected.hasRepetition()) {
+                assertEquals(expected.getRepetition().getExceptions(), actual.getRepetition().getExceptions());
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidInput() {
+        String ics = "BEGIN:VEVENT\r\nDTSTART:2020110\r\nEND:VEVENT\r\n";
+        IOException ex = assertThrows(IOException.class, () -> ICalendar.read(new StringReader(ics), e -> { }));
+        assertTrue(ex.getMessage().contains("line 2"), "Le numéro de ligne est indiqué");
+    }
+}
@@ -0,0 +1,93 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ImmutableEvent class
+ */
+public class ImmutableEventTest {
+
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+    Duration min_120 = Duration.ofMinutes(120);
+
+    @Test
+    public void testBuilder() {
+        ImmutableEvent weekly = ImmutableEvent.builder("Weekly", nov_1_2020_22_30, min_120)
+                .repeat(ChronoUnit.WEEKS)
+                .addException(nov_1_2020.plusWeeks(2))
+                .terminateAfter(5)
+                .build();
+        assertEquals(nov_1_2020_22_30, weekly.getStart());
+        assertEquals(min_120, weekly.getDuration());
+        assertEquals(5, weekly.repetition().occurrences());
+        assertEquals(nov_1_2020.plusWeeks(4).toEpochDay(), weekly.repetition().lastEpochDay());
+        assertTrue(weekly.isInDay(nov_1_2020.plusWeeks(1)));
+        assertTrue(weekly.isInDay(nov_1_2020.plusWeeks(1).plusDays(1)), "L'occurrence finit le lendemain");
+        assertFalse(weekly.isInDay(nov_1_2020.plusWeeks(2)), "Exception");
+        assertFalse(weekly.isInDay(nov_1_2020.plusWeeks(5)), "Après la terminaison");
+        assertThrows(IllegalStateException.class,
+                () -> ImmutableEvent.builder("Simple", nov_1_2020_22_30, min_120).terminateAfter(2));
+    }
+
+    @Test
+    public void testSameResultsAsEvent() {
+        for (Event e : AgendaTest.randomEvents(new Random(83), 300)) {
+            ImmutableEvent frozen = ImmutableEvent.of(e);
+            for (LocalDate day = LocalDate.of(2019, 12, 25); day.isBefore(LocalDate.of(2021, 6, 1)); day = day.plusDays(1)) {
+                assertEquals(e.isInDay(day), frozen.isInDay(day), e + " le " + day);
+            }
+            assertEquals(e.toString(), frozen.toEvent().toString());
+            assertEquals(e.getTerminationDate(), frozen.toEvent().getTerminationDate());
+            assertEquals(e.getNumberOfOccurrences(), frozen.toEvent().getNumberOfOccurrences());
+            assertEquals(frozen, ImmutableEvent.of(frozen.toEvent()), "La copie mutable redonne le même événement");
+        }
+    }
+
+    @Test
+    public void testIdenticalRulesAreEqual() {
+        ImmutableEvent first = ImmutableEvent.builder("A", nov_1_2020_22_30, min_120)
+                .repeat(ChronoUnit.DAYS).addException(nov_1_2020.plusDays(3)).addException(nov_1_2020.plusDays(1)).build();
+        ImmutableEvent second = ImmutableEvent.builder("B", nov_1_2020_22_30.plusHours(1), min_120)
+                .repeat(ChronoUnit.DAYS).addException(nov_1_2020.plusDays(1)).addException(nov_1_2020.plusDays(3)).build();
+        assertEquals(first.repetition(), second.repetition(), "Même règle, quel que soit l'ordre des exceptions");
+        assertEquals(first.repetition().hashCode(), second.repetition().hashCode());
+    }
+
+    // Reports the footprint of an event and of its immutable copy, without the
+    // title and the ChronoUnit constant they share
+    @Test
+    public void testFootprint() {
+        Event simple = new Event("Simple event", nov_1_2020_22_30, min_120);
+        Event weekly = new Event("Weekly event", nov_1_2020_22_30, min_120);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        for (int i = 1; i <= 3; i++) {
+            weekly.addException(nov_1_2020.plusWeeks(i));
+        }
+        weekly.setTermination(10);
+        // At most, without compressed references : a record of 2 longs and 2 references,
+        // plus a repetition of 2 longs and 2 references and its array of 3 exceptions
+        Map<Event, Long> bounds = Map.of(simple, 48L, weekly, 48L + 48 + 48);
+        for (Event e : List.of(simple, weekly)) {
+            ImmutableEvent frozen = ImmutableEvent.of(e);
+            long shared = e.hasRepetition()
+                    ? GraphLayout.parseInstance(e.getTitle(), e.getRepetition().getFrequency()).totalSize()
+                    : GraphLayout.parseInstance(e.getTitle()).totalSize();
+            long mutable = GraphLayout.parseInstance(e).totalSize() - shared;
+            long immutable = GraphLayout.parseInstance(frozen).totalSize() - shared;
+            assertTrue(immutable <= bounds.get(e), e.getTitle() + " : " + immutable + " octets");
+            assertTrue(immutable * 2 < mutable, "L'événement immuable prend moins de la moitié de la place");
+        }
+    }
+}
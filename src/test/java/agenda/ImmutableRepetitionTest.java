@@ -0,0 +1,54 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ImmutableRepetition class
+ */
+public class ImmutableRepetitionTest {
+
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    @Test
+    public void testExceptionsAreFrozen() {
+        long[] exceptions = { nov_1_2020.plusDays(2).toEpochDay(), nov_1_2020.toEpochDay(), nov_1_2020.toEpochDay() };
+        ImmutableRepetition r = new ImmutableRepetition(ChronoUnit.DAYS, exceptions, Long.MAX_VALUE, Long.MAX_VALUE);
+        exceptions[0] = 0;
+        r.exceptions()[0] = 0;
+        assertEquals(List.of(nov_1_2020, nov_1_2020.plusDays(2)), r.getExceptions(), "Triées, sans doublon, copiées");
+        assertTrue(r.isException(nov_1_2020));
+        assertFalse(r.isException(nov_1_2020.plusDays(1)));
+        assertFalse(r.isTerminated());
+    }
+
+    @Test
+    public void testCopyOfRepetition() {
+        Event e = new Event("Monthly", nov_1_2020.atTime(10, 0), java.time.Duration.ofHours(1));
+        e.setRepetition(ChronoUnit.MONTHS);
+        e.addException(nov_1_2020.plusMonths(1));
+        e.setTermination(nov_1_2020.plusMonths(5));
+        ImmutableRepetition r = ImmutableRepetition.of(e.getRepetition());
+        assertEquals(ChronoUnit.MONTHS, r.frequency());
+        assertEquals(6, r.occurrences());
+        assertEquals(nov_1_2020.plusMonths(5).toEpochDay(), r.lastEpochDay());
+        assertEquals(List.of(nov_1_2020.plusMonths(1)), r.getExceptions());
+    }
+
+    @Test
+    public void testDeduplication() {
+        Set<ImmutableRepetition> rules = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            rules.add(new ImmutableRepetition(ChronoUnit.WEEKS, new long[] { i % 3 }, 100, 10));
+        }
+        assertEquals(3, rules.size(), "Les règles identiques sont égales");
+        assertThrows(IllegalArgumentException.class, () -> new ImmutableRepetition(null, new long[0], 0, 0));
+    }
+}
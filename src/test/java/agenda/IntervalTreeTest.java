@@ -0,0 +1,130 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the IntervalTree class
+ */
+public class IntervalTreeTest {
+
+    @Test
+    public void testEmptyTree() {
+        IntervalTree tree = new IntervalTree();
+        List<Integer> found = new ArrayList<>();
+        tree.query(0, 100, found::add);
+        assertTrue(found.isEmpty(), "Un arbre vide ne contient aucun intervalle");
+        assertEquals(0, tree.size());
+    }
+
+    @Test
+    public void testBoundsAreInclusive() {
+        IntervalTree tree = new IntervalTree();
+        tree.insert(10, 20, 1);
+        List<Integer> found = new ArrayList<>();
+        tree.query(20, 20, found::add);
+        tree.query(5, 10, found::add);
+        tree.query(21, 30, found::add);
+        tree.query(0, 9, found::add);
+        assertEquals(List.of(1, 1), found, "Les bornes des intervalles sont incluses");
+    }
+
+    @Test
+    public void testSameResultsAsLinearScan() {
+        Random random = new Random(42);
+        int n = 2000;
+        long[] lo = new long[n];
+        long[] hi = new long[n];
+        IntervalTree tree = new IntervalTree();
+        for (int i = 0; i < n; i++) {
+            lo[i] = random.nextInt(1000);
+            hi[i] = lo[i] + random.nextInt(random.nextBoolean() ? 3 : 100);
+            tree.insert(lo[i], hi[i], i);
+        }
+        assertEquals(n, tree.size());
+        for (int q = 0; q < 500; q++) {
+            long qlo = random.nextInt(1100) - 50;
+            long qhi = qlo + random.nextInt(10);
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                if (lo[i] <= qhi && hi[i] >= qlo) {
+                    expected.add(i);
+                }
+            }
+            List<Integer> found = new ArrayList<>();
+            tree.query(qlo, qhi, found::add);
+            found.sort(null);
+            assertEquals(expected, found, "Même résultat qu'un parcours linéaire");
+        }
+    }
+
+    @Test
+    public void testBuildSameResultsAsInsert() {
+        Random random = new Random(44);
+        int n = 2000;
+        IntervalTree inserted = new IntervalTree();
+        IntervalTree built = new IntervalTree();
+        for (int i = 0; i < n; i++) {
+            long lo = random.nextInt(1000);
+            long hi = lo + random.nextInt(random.nextBoolean() ? 3 : 100);
+            inserted.insert(lo, hi, i);
+            if (i < n / 2) {
+                built.insert(lo, hi, i);
+            } else {
+                built.defer(lo, hi, i);
+            }
+        }
+        List<Integer> before = new ArrayList<>();
+        built.query(0, 2000, before::add);
+        assertEquals(n / 2, before.size(), "Les intervalles différés ne sont pas visibles avant la construction");
+        built.build(false);
+        assertEquals(n, built.size());
+        for (int q = 0; q < 500; q++) {
+            long qlo = random.nextInt(1100) - 50;
+            long qhi = qlo + random.nextInt(10);
+            List<Integer> expected = new ArrayList<>();
+            inserted.query(qlo, qhi, expected::add);
+            List<Integer> found = new ArrayList<>();
+            built.query(qlo, qhi, found::add);
+            assertEquals(expected, found, "Même arbre qu'avec des insertions");
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        Random random = new Random(45);
+        int n = 1000;
+        IntervalTree tree = new IntervalTree();
+        long[] los = new long[n];
+        long[] his = new long[n];
+        for (int i = 0; i < n; i++) {
+            los[i] = random.nextInt(1000);
+            his[i] = los[i] + random.nextInt(50);
+            tree.insert(los[i], his[i], i);
+        }
+        for (int i = 0; i < n; i += 2) {
+            assertTrue(tree.remove(los[i], i));
+        }
+        assertFalse(tree.remove(los[0], 0), "Un intervalle n'est retiré qu'une fois");
+        assertEquals(n / 2, tree.size());
+        for (int q = 0; q < 300; q++) {
+            long qlo = random.nextInt(1100) - 50;
+            long qhi = qlo + random.nextInt(10);
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 1; i < n; i += 2) {
+                if (los[i] <= qhi && his[i] >= qlo) {
+                    expected.add(i);
+                }
+            }
+            List<Integer> found = new ArrayList<>();
+            tree.query(qlo, qhi, found::add);
+            found.sort(null);
+            assertEquals(expected, found, "Les intervalles retirés ne sont plus trouvés");
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the MappedAgenda class
+ */
+public class MappedAgendaTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Event weekly = new Event("Réunion d'équipe", LocalDateTime.of(2020, 11, 2, 9, 0), Duration.ofMinutes(90));
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        weekly.addException(LocalDate.of(2020, 11, 9));
+        weekly.setTermination(LocalDate.of(2021, 1, 25));
+        Event monthly = new Event("Loyer", LocalDateTime.of(2020, 1, 31, 0, 0), Duration.ofMinutes(1));
+        monthly.setRepetition(ChronoUnit.MONTHS);
+        monthly.setTermination(2);
+        Event daily = new Event(null, LocalDateTime.of(2020, 1, 1, 23, 0), Duration.ofHours(2));
+        daily.setRepetition(ChronoUnit.DAYS);
+        List<Event> events = List.of(weekly, monthly, daily, new Event("Simple", LocalDateTime.of(2020, 5, 1, 8, 0), Duration.ofHours(1)));
+        Path file = directory.resolve("agenda.bin");
+        MappedAgenda.write(events, file);
+
+        MappedAgenda mapped = MappedAgenda.open(file);
+        assertEquals(events.size(), mapped.size());
+        for (int i = 0; i < events.size(); i++) {
+            Event expected = events.get(i);
+            Event actual = mapped.getEvent(i);
+            assertEquals(expected.toString(), actual.toString(), "Même événement après relecture");
+            assertEquals(expected.hasRepetition(), actual.hasRepetition());
+            assertEquals(expected.getTerminationDate(), actual.getTerminationDate());
+            assertEquals(expected.getNumberOfOccurrences(), actual.getNumberOfOccurrences());
+            if (expected.hasRepetition()) {
+                assertEquals(expected.getRepetition().getFrequency(), actual.getRepetition().getFrequency());
+                assertEquals(expected.getRepetition().getExceptions(), actual.getRepetition().getExceptions());
+            }
+        }
+        assertEquals(1, mapped.findByTitle("Réunion d'équipe").size(), "Les titres sont encodés en UTF-8");
+        assertEquals(1, mapped.findByTitle(null).size());
+        assertEquals(List.of(), mapped.findByTitle("Inconnu"));
+    }
+
+    @Test
+    public void testSameResultsAsAgenda() throws IOException {
+        Agenda agenda = new Agenda();
+        AgendaTest.randomEvents(new Random(23), 300).forEach(agenda::addEvent);
+        Path file = directory.resolve("agenda.bin");
+        MappedAgenda.write(agenda.getEvents(), file);
+        MappedAgenda mapped = MappedAgenda.open(file);
+
+        for (LocalDate day = LocalDate.of(2019, 12, 25); day.isBefore(LocalDate.of(2021, 6, 1)); day = day.plusDays(3)) {
+            assertEquals(describe(agenda.eventsInDay(day)), describe(mapped.eventsInDay(day)),
+                    "Mêmes événements que l'agenda le " + day);
+        }
+        Random random = new Random(29);
+        for (int i = 0; i < 200; i++) {
+            LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0).plusMinutes(random.nextInt(500 * 24 * 60));
+            Duration duration = Duration.ofMinutes(1 + random.nextInt(300));
+            assertEquals(agenda.isFreeFor(start, duration), mapped.isFreeFor(start, duration),
+                    "Même disponibilité que l'agenda à " + start);
+        }
+        for (Event candidate : AgendaTest.randomEvents(new Random(31), 50)) {
+            assertEquals(agenda.isFreeFor(candidate), mapped.isFreeFor(candidate));
+        }
+    }
+
+    @Test
+    public void testEmptyAgenda() throws IOException {
+        Path file = directory.resolve("empty.bin");
+        MappedAgenda.write(List.of(), file);
+        MappedAgenda mapped = MappedAgenda.open(file);
+        assertEquals(0, mapped.size());
+        assertEquals(List.of(), mapped.eventsInDay(LocalDate.of(2020, 1, 1)));
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws IOException {
+        Path file = directory.resolve("other.bin");
+        Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> MappedAgenda.open(file), "Le nombre magique est vérifié");
+        Path truncated = directory.resolve("truncated.bin");
+        MappedAgenda.write(AgendaTest.randomEvents(new Random(37), 10), truncated);
+        Files.write(truncated, Files.readAllBytes(truncated), StandardOpenOption.APPEND);
+        assertThrows(IOException.class, () -> MappedAgenda.open(truncated), "La taille du fichier est vérifiée");
+    }
+
+    @Test
+    public void testParallelSameResultsAsSequential() throws IOException {
+        Path file = directory.resolve("large.bin");
+        MappedAgenda.write(AgendaTest.randomEvents(new Random(41), 20_000), file);
+        MappedAgenda mapped = MappedAgenda.open(file);
+        mapped.setParallelThreshold(0);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (LocalDate day = LocalDate.of(2020, 1, 1); day.isBefore(LocalDate.of(2021, 3, 1)); day = day.plusDays(17)) {
+                assertEquals(describe(mapped.eventsInDay(day)), describe(mapped.eventsInDay(day, pool)),
+                        "Mêmes événements dans le même ordre le " + day);
+            }
+            assertEquals(describe(mapped.findByTitle("Event 12345")), describe(mapped.findByTitle("Event 12345", pool)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<String> describe(List<Event> events) {
+        return events.stream().map(Event::toString).toList();
+    }
+}
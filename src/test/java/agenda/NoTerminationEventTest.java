@@ -55,15 +55,15 @@ public class NoTerminationEventTest {
     @Test
     public void eventIsNotInExceptionDays() {
         neverEnding.addException(nov_1_2020.plusDays(2)); // ne se produit pas à J+2
-        neverEnding.addException(nov_1_2020.plusDays(4)); // ne se produit pas à J+4
+        neverEnding.addException(nov_1_2020.plusDays(3)); // ne se produit pas à J+3
         assertTrue(neverEnding.isInDay(nov_1_2020.plusDays(1)),
             "Cet événement se produit tous les jours sauf exceptions");
-        assertFalse(neverEnding.isInDay(nov_1_2020.plusDays(2)),
-            "Cet événement ne se produit pas à J+2");
-        assertTrue(neverEnding.isInDay(nov_1_2020.plusDays(3)),
+        assertTrue(neverEnding.isInDay(nov_1_2020.plusDays(2)),
+            "L'occurrence de J+1 (22h30, 120 minutes) déborde sur J+2");
+        assertFalse(neverEnding.isInDay(nov_1_2020.plusDays(3)),
+            "Cet événement ne se produit ni à J+2, ni à J+3");
+        assertTrue(neverEnding.isInDay(nov_1_2020.plusDays(4)),
             "Cet événement se produit tous les jours sauf exceptions");
-        assertFalse(neverEnding.isInDay(nov_1_2020.plusDays(4)),
-            "Cet événement ne se produit pas à J+4");
     }
     
 }
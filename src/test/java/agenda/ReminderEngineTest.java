@@ -0,0 +1,267 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ReminderEngine class, driven by a clock set by the tests
+ */
+public class ReminderEngineTest {
+
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+    Duration min_120 = Duration.ofMinutes(120);
+    Duration min_15 = Duration.ofMinutes(15);
+
+    TestClock clock = new TestClock(nov_1_2020.atStartOfDay());
+    List<Occurrence> fired = new ArrayList<>();
+    ReminderEngine engine = new ReminderEngine(clock, Runnable::run);
+
+    @Test
+    public void testSimpleEvent() {
+        Event simple = new Event("Simple", nov_1_2020_22_30, min_120);
+        assertTrue(engine.schedule(simple, min_15, fired::add));
+        assertEquals(nov_1_2020_22_30.minus(min_15), engine.nextReminder());
+        clock.set(nov_1_2020_22_30.minusMinutes(16));
+        assertEquals(0, engine.dispatchDue(), "Trop tôt");
+        clock.set(nov_1_2020_22_30.minus(min_15));
+        assertEquals(1, engine.dispatchDue());
+        assertEquals(List.of(new Occurrence(simple, nov_1_2020_22_30)), fired);
+        assertEquals(0, engine.pending(), "Un événement simple n'est rappelé qu'une fois");
+        clock.set(nov_1_2020_22_30.minusMinutes(14));
+        assertFalse(engine.schedule(simple, min_15, fired::add), "Plus d'occurrence à rappeler");
+    }
+
+    @Test
+    public void testRepeatingEventIsRearmed() {
+        Event daily = new Event("Daily", nov_1_2020_22_30, min_120);
+        daily.setRepetition(ChronoUnit.DAYS);
+        daily.setTermination(3);
+        engine.schedule(daily, min_15, fired::add);
+        for (int day = 0; day < 5; day++) {
+            clock.set(nov_1_2020_22_30.plusDays(day).minus(min_15));
+            engine.dispatchDue();
+        }
+        assertEquals(List.of(nov_1_2020_22_30, nov_1_2020_22_30.plusDays(1), nov_1_2020_22_30.plusDays(2)),
+                fired.stream().map(Occurrence::start).toList(), "Réarmé jusqu'à la terminaison");
+        assertEquals(0, engine.pending());
+    }
+
+    @Test
+    public void testDueRemindersAreDispatchedInOrder() {
+        Event daily = new Event("Daily", nov_1_2020_22_30, min_120);
+        daily.setRepetition(ChronoUnit.DAYS);
+        Event weekly = new Event("Weekly", nov_1_2020_22_30.plusHours(1), min_120);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        engine.schedule(weekly, min_15, fired::add);
+        engine.schedule(daily, min_15, fired::add);
+        clock.set(nov_1_2020_22_30.plusDays(7).plusHours(1));
+        assertEquals(10, engine.dispatchDue(), "8 rappels quotidiens et 2 hebdomadaires");
+        List<LocalDateTime> starts = fired.stream().map(Occurrence::start).toList();
+        assertEquals(starts.stream().sorted().toList(), starts, "Dans l'ordre chronologique");
+        assertEquals(2, engine.pending());
+    }
+
+    @Test
+    public void testChangesAfterSchedulingAreHonoured() {
+        Event daily = new Event("Daily", nov_1_2020_22_30, min_120);
+        daily.setRepetition(ChronoUnit.DAYS);
+        engine.schedule(daily, min_15, fired::add);
+        daily.addException(nov_1_2020);
+        clock.set(nov_1_2020_22_30.plusDays(1).minus(min_15));
+        engine.dispatchDue();
+        assertEquals(List.of(new Occurrence(daily, nov_1_2020_22_30.plusDays(1))), fired,
+                "Une occurrence devenue exception n'est pas rappelée");
+        assertTrue(engine.cancel(daily));
+        assertFalse(engine.cancel(daily));
+        clock.set(nov_1_2020_22_30.plusDays(10));
+        assertEquals(0, engine.dispatchDue());
+    }
+
+    @Test
+    public void testMovedEventIsRearmedFromNow() {
+        Event daily = new Event("Daily", nov_1_2020_22_30, min_120);
+        daily.setRepetition(ChronoUnit.DAYS);
+        engine.schedule(daily, min_15, fired::add);
+        LocalDateTime nov_2_2020_10_00 = LocalDateTime.of(2020, 11, 2, 10, 0);
+        daily.setStart(nov_2_2020_10_00);
+        clock.set(nov_2_2020_10_00.plusHours(14));
+        assertEquals(0, engine.dispatchDue(), "L'occurrence de 22h30 n'existe plus");
+        assertEquals(List.of(), fired, "L'occurrence déplacée au 2 novembre, passée, n'est pas rappelée en retard");
+        assertEquals(nov_2_2020_10_00.plusDays(1).minus(min_15), engine.nextReminder());
+
+        daily.setStart(nov_2_2020_10_00.plusDays(1).plusHours(2));
+        clock.set(nov_2_2020_10_00.plusDays(1).minus(min_15));
+        assertEquals(0, engine.dispatchDue());
+        assertEquals(nov_2_2020_10_00.plusDays(1).plusHours(2).minus(min_15), engine.nextReminder(),
+                "L'occurrence déplacée plus tard dans la journée est rappelée");
+    }
+
+    @Test
+    public void testChangeInScheduledAgendaRearmsAtOnce() {
+        Agenda agenda = new Agenda();
+        Event daily = new Event("Daily", nov_1_2020_22_30, min_120);
+        daily.setRepetition(ChronoUnit.DAYS);
+        agenda.addEvent(daily);
+        engine.scheduleAll(agenda, min_15, fired::add);
+        clock.set(nov_1_2020_22_30.minusHours(4));
+        daily.setStart(nov_1_2020_22_30.minusHours(2));
+        assertEquals(nov_1_2020_22_30.minusHours(2).minus(min_15), engine.nextReminder(),
+                "Réarmé dès le changement");
+        clock.set(nov_1_2020_22_30.minusHours(2).minus(min_15));
+        assertEquals(1, engine.dispatchDue());
+        assertEquals(List.of(new Occurrence(daily, nov_1_2020_22_30.minusHours(2))), fired);
+        agenda.updateEvent(daily, e -> e.setStart(nov_1_2020_22_30.plusDays(3)));
+        assertEquals(1, engine.pending());
+        assertEquals(nov_1_2020_22_30.plusDays(3).minus(min_15), engine.nextReminder());
+    }
+
+    @Test
+    public void testScheduleAll() {
+        Agenda agenda = new Agenda();
+        agenda.addEvent(new Event("Past", nov_1_2020_22_30.minusDays(1), min_120));
+        agenda.addEvent(new Event("Next", nov_1_2020_22_30, min_120));
+        engine.scheduleAll(agenda, min_15, fired::add);
+        assertEquals(1, engine.pending(), "Les événements passés ne sont pas rappelés");
+        Event added = new Event("Added", nov_1_2020_22_30.minusHours(2), min_120);
+        agenda.addEvent(added);
+        agenda.addAll(List.of(new Event("Batch", nov_1_2020_22_30.plusDays(1), min_120)));
+        assertEquals(3, engine.pending(), "Les événements ajoutés ensuite sont rappelés");
+        assertEquals(added.getStart().minus(min_15), engine.nextReminder());
+        agenda.removeEvent(added);
+        assertEquals(2, engine.pending(), "Un événement retiré n'est plus rappelé");
+        assertTrue(engine.cancelAll(agenda));
+        assertFalse(engine.cancelAll(agenda));
+        assertEquals(0, engine.pending());
+        agenda.addEvent(new Event("After", nov_1_2020_22_30.plusDays(2), min_120));
+        assertEquals(0, engine.pending(), "L'agenda n'est plus suivi");
+    }
+
+    @Test
+    public void testStartedEngineDispatchesOnVirtualThreads() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(2);
+        List<Boolean> virtual = new ArrayList<>();
+        try (ReminderEngine started = new ReminderEngine()) {
+            started.start();
+            LocalDateTime soon = LocalDateTime.now().plus(Duration.ofMillis(300));
+            Event daily = new Event("Soon", soon, min_120);
+            Event later = new Event("Later", soon.plus(Duration.ofMillis(200)), min_120);
+            for (Event e : List.of(daily, later)) {
+                started.schedule(e, Duration.ZERO, o -> {
+                    synchronized (virtual) {
+                        virtual.add(Thread.currentThread().isVirtual());
+                    }
+                    latch.countDown();
+                });
+            }
+            assertTrue(latch.await(10, TimeUnit.SECONDS), "Les rappels sont envoyés à l'heure");
+        }
+        assertEquals(List.of(true, true), virtual);
+    }
+
+    @Test
+    public void testFailingEventDoesNotHoldTheOthers() {
+        Event broken = new Event("Broken", nov_1_2020_22_30, min_120) {
+            @Override
+            public LocalDateTime nextOccurrenceAfter(LocalDateTime time) {
+                throw new IllegalStateException("Broken");
+            }
+        };
+        Event simple = new Event("Simple", nov_1_2020_22_30.plusMinutes(1), min_120);
+        engine.schedule(broken, min_15, fired::add);
+        engine.schedule(simple, min_15, fired::add);
+        clock.set(nov_1_2020_22_30);
+        assertThrows(IllegalStateException.class, engine::dispatchDue);
+        assertEquals(List.of(new Occurrence(broken, nov_1_2020_22_30), new Occurrence(simple, simple.getStart())), fired,
+                "Les rappels dus sont envoyés malgré l'échec");
+        assertEquals(0, engine.pending(), "L'événement en échec n'est plus rappelé");
+    }
+
+    @Test
+    public void testFarReminderDoesNotStopTheEngine() throws InterruptedException {
+        List<RuntimeException> failures = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        try (ReminderEngine started = new ReminderEngine()) {
+            started.setFailureHandler(failures::add);
+            started.start();
+            // Too far for a wait in milliseconds
+            started.schedule(new Event("Far", LocalDateTime.of(999_999_999, 1, 1, 0, 0), min_120), min_15, o -> {});
+            Thread.sleep(200);
+            started.schedule(new Event("Soon", LocalDateTime.now().plus(Duration.ofMillis(200)), min_120),
+                    Duration.ZERO, o -> latch.countDown());
+            assertTrue(latch.await(10, TimeUnit.SECONDS), "Le rappel proche est envoyé");
+        }
+        assertEquals(List.of(), failures);
+    }
+
+    @Test
+    public void testClockFailureIsReported() throws InterruptedException {
+        List<RuntimeException> failures = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        engine.schedule(new Event("Simple", nov_1_2020_22_30, min_120), min_15, o -> latch.countDown());
+        clock.set(nov_1_2020_22_30);
+        clock.failures = 1;
+        engine.setFailureHandler(failures::add);
+        engine.start();
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS), "Le moteur continue après l'échec");
+        } finally {
+            engine.close();
+        }
+        assertEquals(1, failures.size(), "L'échec est signalé");
+    }
+
+    /**
+     * A clock set by the tests
+     */
+    static final class TestClock extends Clock {
+
+        private volatile Instant now;
+
+        /**
+         * Number of readings that fail before the next ones succeed
+         */
+        volatile int failures;
+
+        TestClock(LocalDateTime now) {
+            set(now);
+        }
+
+        void set(LocalDateTime time) {
+            this.now = time.toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            if (failures > 0) {
+                failures--;
+                throw new IllegalStateException("Clock failure");
+            }
+            return now;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package agenda;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 
@@ -101,4 +102,51 @@ public class RepetitionTest {
         assertNotNull(dailyRepetition.getTermination());
         assertEquals(10L, dailyRepetition.getTermination().numberOfOccurrences());
     }
+
+    @Test
+    public void testDuplicateExceptionsAreIgnored() {
+        LocalDate exception = LocalDate.of(2020, 11, 5);
+        dailyRepetition.addException(exception);
+        dailyRepetition.addException(LocalDate.of(2020, 11, 1));
+        dailyRepetition.addException(exception);
+        assertEquals(2, dailyRepetition.getExceptionCount(),
+            "Une exception ajoutée deux fois n'est comptée qu'une fois");
+    }
+
+    @Test
+    public void testExceptionsInAnyOrder() {
+        for (int i = 0; i < 100; i++) {
+            // 0, 37, 74, 11, ... : every day modulo 100, in no particular order
+            dailyRepetition.addException(startDate.plusDays(i * 37 % 100 * 2));
+        }
+        assertEquals(100, dailyRepetition.getExceptionCount());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i % 2 == 0, dailyRepetition.isException(startDate.plusDays(i)));
+            assertEquals(i % 2 == 0, dailyRepetition.isException(startDate.plusDays(i).toEpochDay()));
+        }
+    }
+
+    @Test
+    public void testReplacedRepetitionNoLongerNotifies() {
+        Event e = new Event("Listened", startDate.atTime(10, 0), Duration.ofHours(1));
+        e.setRepetition(ChronoUnit.DAYS);
+        Repetition replaced = e.getRepetition();
+        e.setRepetition(ChronoUnit.WEEKS);
+        int[] changes = new int[1];
+        e.setChangeListener(new Event.ChangeListener() {
+            @Override
+            public void beforeChange(Event changed) {
+                changes[0]++;
+            }
+
+            @Override
+            public void afterChange(Event changed) {
+            }
+        });
+        replaced.addException(startDate);
+        assertEquals(0, changes[0], "L'ancienne répétition ne concerne plus l'événement");
+        e.getRepetition().addException(startDate);
+        e.getRepetition().setTermination(null);
+        assertEquals(2, changes[0]);
+    }
 }